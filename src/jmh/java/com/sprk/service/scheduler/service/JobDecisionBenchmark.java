@@ -0,0 +1,71 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.commons.entity.mq.JobModel;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * Measures the per-job decisions the scheduler takes when jobs come due: computing the next fire time from
+ * the job calendar, the due check built on it, and resolving the routing key a due job is published with.
+ * Each invocation walks a synthetic population of jobs with a fixed seed, mixing ONCE, daily, weekly and
+ * monthly schedules in every status.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobDecisionBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int jobCount;
+
+    private JobProcessor jobProcessor;
+    private List<JobModel> jobs;
+    private List<Instant> nextFireTimes;
+    private Instant now;
+
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Only the decision path is measured, so the collaborators that talk to the database or broker are left out.
+        jobProcessor = new JobProcessor(null, SyntheticJobs.amqpConfigProperties(), null, null, null, Clock.systemUTC());
+        now = Instant.now();
+        jobs = SyntheticJobs.create(jobCount, now, new Random(42L), true);
+        nextFireTimes = jobs.stream().map(jobProcessor::computeNextFireAt).toList();
+    }
+
+
+
+    @Benchmark
+    public void computeNextFireAt(Blackhole blackhole) {
+        for (JobModel job : jobs) {
+            blackhole.consume(jobProcessor.computeNextFireAt(job));
+        }
+    }
+
+    @Benchmark
+    public void isJobDue(Blackhole blackhole) {
+        for (Instant nextFireAt : nextFireTimes) {
+            blackhole.consume(jobProcessor.isJobDue(nextFireAt, now));
+        }
+    }
+
+    @Benchmark
+    public void resolveRoutingKey(Blackhole blackhole) {
+        for (JobModel job : jobs) {
+            blackhole.consume(jobProcessor.resolveRoutingKey(job.getJobType()));
+        }
+    }
+}
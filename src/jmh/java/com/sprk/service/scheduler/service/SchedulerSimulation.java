@@ -0,0 +1,364 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.commons.entity.mq.tag.JobStatus;
+import com.sprk.commons.entity.mq.tag.JobType;
+import com.sprk.service.scheduler.consumer.JobFailure;
+import com.sprk.service.scheduler.dao.JobStore;
+import com.sprk.service.scheduler.entity.mq.JobStateModel;
+import com.sprk.service.scheduler.properties.scheduler.SchedulerConfigProperties;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.*;
+import java.util.*;
+
+
+
+/**
+ * Replays the scheduler against an in-memory job store and a broker that confirms every message, on a virtual
+ * clock that jumps from one fire time to the next, so days of schedules run in seconds.
+ * Due jobs go through the same {@link JobProcessor#publishJobs(Collection, Map)} and {@link JobProcessor#reschedule(Collection)}
+ * path the dispatcher and the executor use. The wall time spent deciding is added to the virtual clock, so a slow
+ * decision path shows up as late fires.
+ * <p>
+ * Run with {@code mvn -Pbenchmark compile exec:exec@simulate}, the {@code simulation.*} properties of the profile
+ * set the population and duration.
+ */
+public final class SchedulerSimulation {
+
+    private static final String SIMULATION_INSTANCE = "SIMULATION";
+
+    private final int jobCount;
+    private final Duration duration;
+    private final double failureRate;
+    private final Duration executionTime;
+    private final Duration tolerance;
+    private final Random random;
+
+    private final VirtualClock clock;
+    private final InMemoryJobStore jobStore;
+    private final JobProcessor jobProcessor;
+    private final int batchSize;
+    private final PriorityQueue<Completion> completions = new PriorityQueue<>(Comparator.comparing(Completion::at));
+
+    private long publishedJobs;
+    private long skippedFires;
+    private long missedFires;
+    private Duration maxLateness = Duration.ZERO;
+    private final List<Long> decisionNanosPerJob = new ArrayList<>();
+
+    private record Completion(Instant at, Long jobId) {}
+
+
+
+    private SchedulerSimulation(int jobCount, Duration duration, double failureRate, Duration executionTime, Duration tolerance, long seed) {
+        this.jobCount = jobCount;
+        this.duration = duration;
+        this.failureRate = failureRate;
+        this.executionTime = executionTime;
+        this.tolerance = tolerance;
+        this.random = new Random(seed);
+
+        SchedulerConfigProperties schedulerConfigProperties = new SchedulerConfigProperties();
+        this.batchSize = schedulerConfigProperties.getBatchSize();
+        this.clock = new VirtualClock(Instant.now());
+        this.jobStore = new InMemoryJobStore();
+        this.jobProcessor = new JobProcessor(
+                jobStore,
+                SyntheticJobs.amqpConfigProperties(),
+                NodeIdentity.fixed(SIMULATION_INSTANCE),
+                new ConfirmingBroker(),
+                // An empty ring owns every job, as a single instance does.
+                new InstanceRing(schedulerConfigProperties),
+                clock
+        );
+    }
+
+
+
+    public static void main(String[] args) {
+        new SchedulerSimulation(
+                Integer.getInteger("simulation.jobs", 100_000),
+                Duration.ofDays(Integer.getInteger("simulation.days", 7)),
+                Double.parseDouble(System.getProperty("simulation.failureRate", "0.05")),
+                Duration.ofMillis(Long.getLong("simulation.executionMillis", 30_000L)),
+                Duration.ofMillis(Long.getLong("simulation.toleranceMillis", 1_000L)),
+                Long.getLong("simulation.seed", 42L)
+        ).run();
+    }
+
+
+
+    private void run() {
+        Instant start = clock.instant();
+        Instant end = start.plus(duration);
+        long wallStart = System.nanoTime();
+
+        // Index the population, as the reconciler does for new jobs.
+        List<JobModel> jobs = SyntheticJobs.create(jobCount, start, random, false);
+        jobStore.load(jobs);
+        jobProcessor.reschedule(jobs.stream().map(SyntheticJobs::copy).toList());
+
+        while (true) {
+            Instant next = earliest(jobStore.nextFireAt(), Optional.ofNullable(completions.peek()).map(Completion::at).orElse(null));
+            if (null == next || next.isAfter(end)) {
+                break;
+            }
+            clock.advanceTo(next);
+            completeExecutions();
+            fireDueJobs();
+        }
+
+        report(start, end, System.nanoTime() - wallStart);
+    }
+
+
+
+    /**
+     * Publishes one batch of due jobs and records how long the decision took and how late each job fired.
+     */
+    private void fireDueJobs() {
+        Map<Long, Instant> dueJobs = jobStore.pollDue(clock.instant(), batchSize);
+        if (dueJobs.isEmpty()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        List<ImmutablePair<Long, JobType>> published = jobProcessor.publishJobs(jobStore.getJobsByIds(dueJobs.keySet()), dueJobs);
+        long elapsed = System.nanoTime() - started;
+        decisionNanosPerJob.add(elapsed / dueJobs.size());
+
+        Instant now = clock.instant();
+        for (ImmutablePair<Long, JobType> job : published) {
+            Duration lateness = Duration.between(dueJobs.get(job.getLeft()), now);
+            if (lateness.compareTo(tolerance) > 0) {
+                missedFires++;
+            }
+            if (lateness.compareTo(maxLateness) > 0) {
+                maxLateness = lateness;
+            }
+            completions.add(new Completion(now.plus(executionTime), job.getLeft()));
+        }
+        publishedJobs += published.size();
+        skippedFires += dueJobs.size() - published.size();
+
+        // Deciding takes time, the clock moves on while the scheduler is busy.
+        clock.advanceBy(Duration.ofNanos(elapsed));
+    }
+
+
+
+    /**
+     * Finishes the executions that are done by now, as the executor does, and schedules the next run.
+     */
+    private void completeExecutions() {
+        List<JobModel> finishedJobs = new ArrayList<>();
+        while (null != completions.peek() && !completions.peek().at().isAfter(clock.instant())) {
+            finishedJobs.add(jobStore.finish(completions.poll().jobId(), random.nextDouble() < failureRate));
+        }
+        if (!finishedJobs.isEmpty()) {
+            jobProcessor.reschedule(finishedJobs);
+        }
+    }
+
+
+
+    private void report(Instant start, Instant end, long wallNanos) {
+        double wallSeconds = wallNanos / 1_000_000_000.0;
+        List<Long> latencies = new ArrayList<>(decisionNanosPerJob);
+        Collections.sort(latencies);
+
+        System.out.printf("Simulated %s (%s - %s) of %d jobs in %.2f s%n", duration, start, end, jobCount, wallSeconds);
+        System.out.printf("Published jobs        : %d (%.0f jobs/s)%n", publishedJobs, publishedJobs / wallSeconds);
+        System.out.printf("Decision latency (job): p50 %.2f us, p99 %.2f us, max %.2f us%n",
+                percentile(latencies, 0.50) / 1_000.0,
+                percentile(latencies, 0.99) / 1_000.0,
+                percentile(latencies, 1.00) / 1_000.0);
+        System.out.printf("Missed fires (> %d ms): %d, max lateness %d ms%n", tolerance.toMillis(), missedFires, maxLateness.toMillis());
+        System.out.printf("Skipped fires         : %d%n", skippedFires);
+    }
+
+
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0L;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+
+    private static Instant earliest(Instant first, Instant second) {
+        if (null == first) return second;
+        if (null == second) return first;
+        return first.isBefore(second) ? first : second;
+    }
+
+
+
+    /**
+     * A UTC clock that only moves when the simulation advances it.
+     */
+    private static final class VirtualClock extends Clock {
+
+        private Instant now;
+
+        private VirtualClock(Instant now) {
+            this.now = now;
+        }
+
+        void advanceTo(Instant instant) {
+            if (instant.isAfter(now)) {
+                now = instant;
+            }
+        }
+
+        void advanceBy(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            if (!ZoneOffset.UTC.equals(zone)) {
+                throw new UnsupportedOperationException("The simulation runs in UTC.");
+            }
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+
+
+    /**
+     * The job and job state tables, held in memory. Reads return copies, as the database would.
+     */
+    private static final class InMemoryJobStore implements JobStore {
+
+        private final Map<Long, JobModel> jobs = new HashMap<>();
+        private final Map<Long, Instant> nextFireTimes = new HashMap<>();
+        private final Map<Long, String> claimTokens = new HashMap<>();
+        private final PriorityQueue<JobStateModel> triggers = new PriorityQueue<>(Comparator.comparing(JobStateModel::getNextFireAt));
+
+        void load(List<JobModel> models) {
+            models.forEach(model -> jobs.put(model.getId(), SyntheticJobs.copy(model)));
+        }
+
+        Instant nextFireAt() {
+            // Drop the triggers that were replaced by a later reschedule.
+            while (null != triggers.peek() && !triggers.peek().getNextFireAt().equals(nextFireTimes.get(triggers.peek().getJobId()))) {
+                triggers.poll();
+            }
+            return Optional.ofNullable(triggers.peek()).map(JobStateModel::getNextFireAt).orElse(null);
+        }
+
+        Map<Long, Instant> pollDue(Instant now, int limit) {
+            Map<Long, Instant> dueJobs = new LinkedHashMap<>();
+            while (dueJobs.size() < limit && null != nextFireAt() && !triggers.peek().getNextFireAt().isAfter(now)) {
+                // The stored next fire time stays until the job is rescheduled, as it does in job_state.
+                JobStateModel trigger = triggers.poll();
+                dueJobs.put(trigger.getJobId(), trigger.getNextFireAt());
+            }
+            return dueJobs;
+        }
+
+        JobModel finish(Long jobId, boolean failed) {
+            JobModel job = jobs.get(jobId);
+            job.setStatus(failed ? JobStatus.FAILED : JobStatus.SUCCESS);
+            if (failed) {
+                job.setAttempts(job.getAttempts() + 1);
+            }
+            return SyntheticJobs.copy(job);
+        }
+
+        List<JobModel> getJobsByIds(Collection<Long> jobIds) {
+            return jobIds.stream().map(jobs::get).filter(Objects::nonNull).map(SyntheticJobs::copy).toList();
+        }
+
+        @Override
+        public void saveJobStates(List<JobStateModel> models) {
+            for (JobStateModel state : models) {
+                if (null == state.getNextFireAt()) {
+                    nextFireTimes.remove(state.getJobId());
+                } else {
+                    nextFireTimes.put(state.getJobId(), state.getNextFireAt());
+                    triggers.add(state);
+                }
+            }
+        }
+
+        @Override
+        public List<Long> claimJobs(Collection<Long> jobIds, Collection<Long> attemptResetJobIds, Instant now, Instant claimedAt, String claimedBy, String claimToken) {
+            List<Long> claimedJobIds = new ArrayList<>();
+            for (Long jobId : jobIds) {
+                JobModel job = jobs.get(jobId);
+                Instant nextFireAt = nextFireTimes.get(jobId);
+                if (null == job || JobStatus.RUNNING.equals(job.getStatus()) || JobStatus.NO_INSTANCE.equals(job.getStatus())
+                        || null == nextFireAt || nextFireAt.isAfter(now)) {
+                    continue;
+                }
+                job.setStatus(JobStatus.RUNNING);
+                job.setLastRanAt(claimedAt);
+                job.setLastRanBy(claimedBy);
+                claimTokens.put(jobId, claimToken);
+                if (attemptResetJobIds.contains(jobId)) {
+                    job.setAttempts(0);
+                }
+                claimedJobIds.add(jobId);
+            }
+            return claimedJobIds;
+        }
+
+        @Override
+        public boolean releaseJob(Long jobId, JobStatus status, Instant lastRanAt, String lastRanBy, String claimToken) {
+            JobModel job = jobs.get(jobId);
+            if (null == job || !JobStatus.RUNNING.equals(job.getStatus()) || !claimToken.equals(claimTokens.get(jobId))) {
+                return false;
+            }
+            job.setStatus(status);
+            job.setLastRanAt(lastRanAt);
+            job.setLastRanBy(lastRanBy);
+            return true;
+        }
+
+        @Override
+        public boolean claimRetry(Long jobId, int attempts, Instant claimedAt, String claimedBy) {
+            // Failed jobs are retried through their next fire time, there are no delayed retries to claim.
+            return false;
+        }
+
+        @Override
+        public void saveJobFailure(Long jobId, JobFailure failure, Instant failedAt) {
+        }
+
+        @Override
+        public void quarantineJob(Long jobId, Instant quarantinedAt, String cause) {
+            nextFireTimes.remove(jobId);
+        }
+    }
+
+
+
+    /**
+     * A broker that accepts and confirms every message straight away.
+     */
+    private static final class ConfirmingBroker extends RabbitTemplate {
+
+        @Override
+        public void convertAndSend(String exchange, String routingKey, Object object, MessagePostProcessor messagePostProcessor, CorrelationData correlationData) {
+            correlationData.getFuture().complete(new CorrelationData.Confirm(true, null));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.commons.entity.mq.tag.JobStatus;
+import com.sprk.commons.entity.mq.tag.JobType;
+import com.sprk.commons.entity.mq.tag.ScheduleType;
+import com.sprk.service.scheduler.properties.amqp.AMQPConfigProperties;
+import com.sprk.service.scheduler.properties.amqp.AMQPType;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+
+/**
+ * Generates job populations for the benchmarks and the simulation.
+ * A quarter of the jobs each run ONCE, daily, weekly and monthly, at random minutes of the day.
+ */
+final class SyntheticJobs {
+
+    private SyntheticJobs() {}
+
+
+
+    /**
+     * @return The AMQP settings of application.properties, without a broker behind them.
+     */
+    static AMQPConfigProperties amqpConfigProperties() {
+        AMQPType routingKey = new AMQPType();
+        routingKey.setStandard("sprk_routing_key");
+        routingKey.setMailer("sprk_mailer_routing_key");
+        routingKey.setReleaseCriteriaMarker("sprk_release_criteria_marker_routing_key");
+        routingKey.setCertificateReleaser("sprk_certificate_releaser_routing_key");
+        routingKey.setWebsiteDataTransfer("sprk_website_data_transfer_routing_key");
+        routingKey.setUpdateExpiryStatus("sprk_update_expiry_status_routing_key");
+        routingKey.setExpiryReminderMail("sprk_expiry_reminder_mail_routing_key");
+        routingKey.setUpdateStudentStatus("sprk_update_student_status_routing_key");
+        routingKey.setNotifyBookingStart("sprk_notify_booking_start_routing_key");
+
+        AMQPConfigProperties amqpConfigProperties = new AMQPConfigProperties();
+        amqpConfigProperties.setExchange("sprk_exchange");
+        amqpConfigProperties.setRoutingKey(routingKey);
+        amqpConfigProperties.setRetryDelay(600_000);
+        amqpConfigProperties.setRetryLimit(3);
+        // Without a broker the scheduler is the only one retrying.
+        amqpConfigProperties.setDelayedRetry(false);
+        amqpConfigProperties.setConfirmTimeout(5_000);
+        return amqpConfigProperties;
+    }
+
+
+
+    /**
+     * @param count The number of jobs.
+     * @param now The current time, the execution times fall on the same day.
+     * @param random The source of randomness, seeded by the caller for repeatable populations.
+     * @param withHistory true to give nine in ten jobs a previous run within the last two days, false for fresh jobs.
+     * @return The jobs, with IDs from 1 to count.
+     */
+    static List<JobModel> create(int count, Instant now, Random random, boolean withHistory) {
+        JobType[] jobTypes = JobType.values();
+        JobStatus[] statuses = {JobStatus.SUCCESS, JobStatus.FAILED, JobStatus.NO_INSTANCE, null};
+        Instant today = now.truncatedTo(ChronoUnit.DAYS);
+
+        List<JobModel> models = new ArrayList<>(count);
+        for (int index = 1; index <= count; index++) {
+            JobModel model = new JobModel();
+            model.setId((long) index);
+            model.setJobType(jobTypes[random.nextInt(jobTypes.length)]);
+            model.setExecuteAt(today.plus(random.nextInt(24 * 60), ChronoUnit.MINUTES));
+            model.setAttempts(0);
+
+            switch (index % 4) {
+                case 0 -> model.setScheduleType(ScheduleType.ONCE);
+                case 1 -> model.setScheduleType(ScheduleType.EVERYDAY);
+                case 2 -> {
+                    model.setScheduleType(ScheduleType.EVERYDAY);
+                    model.setDays(List.of(DayOfWeek.of(1 + random.nextInt(7)), DayOfWeek.of(1 + random.nextInt(7))));
+                }
+                default -> {
+                    model.setScheduleType(ScheduleType.EVERYDAY);
+                    model.setDates(List.of(1 + random.nextInt(28), 15));
+                }
+            }
+
+            if (withHistory && 0 != index % 10) {
+                model.setStatus(statuses[random.nextInt(statuses.length)]);
+                model.setAttempts(random.nextInt(4));
+                model.setLastRanAt(now.minus(random.nextInt(2 * 24 * 60), ChronoUnit.MINUTES));
+            }
+            models.add(model);
+        }
+        return models;
+    }
+
+
+
+    /**
+     * @return A detached copy of the job, as a fresh read from the database would return.
+     */
+    static JobModel copy(JobModel model) {
+        JobModel copy = new JobModel();
+        copy.setId(model.getId());
+        copy.setJobType(model.getJobType());
+        copy.setScheduleType(model.getScheduleType());
+        copy.setExecuteAt(model.getExecuteAt());
+        copy.setDays(model.getDays());
+        copy.setDates(model.getDates());
+        copy.setStatus(model.getStatus());
+        copy.setAttempts(model.getAttempts());
+        copy.setLastRanAt(model.getLastRanAt());
+        copy.setLastRanBy(model.getLastRanBy());
+        copy.setJsonData(model.getJsonData());
+        return copy;
+    }
+}
@@ -0,0 +1,54 @@
+package com.sprk.service.scheduler.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sprk.commons.dto.amqp.EmailTemplateDTO;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+
+/**
+ * Measures decoding the payload of an EMAIL job, the list of mail templates stored in its json data.
+ * The message body is a synthetic HTML document of a few kilobytes, the size of the generated templates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonConverterBenchmark {
+
+    @Param({"1", "100", "1000"})
+    int templateCount;
+
+    private JsonConverter jsonConverter;
+    private String payload;
+
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jsonConverter = new JsonConverter(new ObjectMapper().registerModule(new JavaTimeModule()));
+        String messageBody = "<html><body>" + "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>".repeat(60) + "</body></html>";
+        payload = IntStream.range(0, templateCount)
+                .mapToObj(index -> "{\"recipient\":\"student" + index + "@example.com\"," +
+                        "\"subject\":\"Payment due reminder\"," +
+                        "\"messageBody\":\"" + messageBody + "\"}")
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+
+
+
+    @Benchmark
+    public List<EmailTemplateDTO> convertToList() throws IOException {
+        return jsonConverter.convertToList(payload, EmailTemplateDTO.class);
+    }
+}
@@ -1,17 +1,50 @@
 package com.sprk.service.scheduler.config;
 
+import com.sprk.service.scheduler.properties.async.AsyncConfigProperties;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.Semaphore;
+
 
 @Configuration
 @EnableAsync
+@Slf4j
+@RequiredArgsConstructor
 public class AsyncConfiguration {
 
+    private final AsyncConfigProperties asyncConfigProperties;
+
+    /**
+     * The task executor for mail dispatch and other blocking I/O.
+     * With virtual threads enabled (Java 21+) every task gets its own virtual thread, and a semaphore caps how
+     * many of them run at once; tasks beyond the cap wait for a permit instead of being rejected.
+     * Otherwise a bounded pool of platform threads is used.
+     */
     @Bean("taskExecutor")
-    public ThreadPoolTaskExecutor taskExecutor() {
+    public AsyncTaskExecutor taskExecutor() {
+        if (isVirtualThreadMode(asyncConfigProperties)) {
+            Semaphore permits = new Semaphore(asyncConfigProperties.getMaxConcurrency());
+            SimpleAsyncTaskExecutor executor = virtualThreadExecutor("K-AsyncVirtualThread-");
+            executor.setTaskDecorator(task -> () -> {
+                permits.acquireUninterruptibly();
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+            return executor;
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(20);
         executor.setMaxPoolSize(50);
@@ -21,6 +54,33 @@ public class AsyncConfiguration {
         return executor;
     }
 
+
+
+    /**
+     * @return A new executor that starts a virtual thread per task, only to be used in virtual thread mode.
+     */
+    public static SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+
+
+    /**
+     * @return true if virtual threads are enabled and the runtime supports them, i.e. Java 21 or later.
+     */
+    public static boolean isVirtualThreadMode(AsyncConfigProperties asyncConfigProperties) {
+        if (!asyncConfigProperties.isVirtualThreads()) {
+            return false;
+        }
+        if (Runtime.version().feature() < 21) {
+            log.warn("Virtual threads require Java 21 or later, running on Java {} with platform threads.", Runtime.version().feature());
+            return false;
+        }
+        return true;
+    }
+
 }
 
 
@@ -0,0 +1,21 @@
+package com.sprk.service.scheduler.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+
+/**
+ * The clock every scheduling decision reads the current time from.
+ * Replacing it (e.g. with a fixed or virtual clock) replays schedules without waiting for wall time.
+ */
+@Configuration
+public class ClockConfiguration {
+
+    @Bean
+    public Clock clock() {
+        return Clock.systemUTC();
+    }
+
+}
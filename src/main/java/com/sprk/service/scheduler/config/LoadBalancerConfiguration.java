@@ -1,8 +1,10 @@
 package com.sprk.service.scheduler.config;
 
+import com.sprk.service.scheduler.properties.scheduler.SchedulerConfigProperties;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 
@@ -10,7 +12,11 @@ import org.springframework.web.client.RestTemplate;
 public class LoadBalancerConfiguration {
     @Bean
     @LoadBalanced
-    RestTemplate loadBalancedRestTemplate() {
-        return new RestTemplate();
+    RestTemplate loadBalancedRestTemplate(SchedulerConfigProperties schedulerConfigProperties) {
+        // Bounded socket timeouts, so a hung service cannot hold a job past its budget (interrupts do not end socket reads).
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(schedulerConfigProperties.getHttpConnectTimeout());
+        requestFactory.setReadTimeout(schedulerConfigProperties.getHttpReadTimeout());
+        return new RestTemplate(requestFactory);
     }
 }
@@ -1,16 +1,28 @@
 package com.sprk.service.scheduler.config;
 
+import com.sprk.service.scheduler.consumer.ListenerAcknowledger;
+import com.sprk.service.scheduler.consumer.ListenerConcurrencyScaler;
+import com.sprk.service.scheduler.properties.async.AsyncConfigProperties;
+import com.sprk.service.scheduler.service.JobRetryPublisher;
 import com.sprk.service.scheduler.properties.amqp.AMQPConfigProperties;
+import com.sprk.service.scheduler.properties.amqp.AMQPListener;
+import com.sprk.service.scheduler.properties.amqp.AMQPType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 
@@ -19,6 +31,9 @@ import java.util.Objects;
 public class RabbitMQConfig {
 
     public final AMQPConfigProperties amqpConfiguration;
+    private final ListenerConcurrencyScaler listenerConcurrencyScaler;
+    private final ListenerAcknowledger listenerAcknowledger;
+    private final AsyncConfigProperties asyncConfigProperties;
 
     @Bean("standardQueue")
     public Queue standardQueue() {
@@ -141,11 +156,149 @@ public class RabbitMQConfig {
 
 
 
+    /**
+     * The standard jobs mostly wait on REST calls to other services, so in virtual thread mode their consumers
+     * run on virtual threads and the blocked calls do not hold on to platform threads.
+     */
+    @Bean("standardContainerFactory")
+    public SimpleRabbitListenerContainerFactory standardContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = containerFactory("standard", configurer, connectionFactory);
+        if (AsyncConfiguration.isVirtualThreadMode(asyncConfigProperties)) {
+            factory.setTaskExecutor(AsyncConfiguration.virtualThreadExecutor("K-StandardVirtualThread-"));
+        }
+        return factory;
+    }
+
+    @Bean("mailerContainerFactory")
+    public SimpleRabbitListenerContainerFactory mailerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        return containerFactory("mailer", configurer, connectionFactory);
+    }
+
+    @Bean("releaseCriteriaMarkerContainerFactory")
+    public SimpleRabbitListenerContainerFactory releaseCriteriaMarkerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        return batchContainerFactory("releaseCriteriaMarker", configurer, connectionFactory);
+    }
+
+    @Bean("certificateReleaserContainerFactory")
+    public SimpleRabbitListenerContainerFactory certificateReleaserContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        return containerFactory("certificateReleaser", configurer, connectionFactory);
+    }
+
+    @Bean("updateExpiryStatusContainerFactory")
+    public SimpleRabbitListenerContainerFactory updateExpiryStatusContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        return containerFactory("updateExpiryStatus", configurer, connectionFactory);
+    }
+
+    @Bean("expiryReminderMailContainerFactory")
+    public SimpleRabbitListenerContainerFactory expiryReminderMailContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        return containerFactory("expiryReminderMail", configurer, connectionFactory);
+    }
+
+    @Bean("updateStudentStatusContainerFactory")
+    public SimpleRabbitListenerContainerFactory updateStudentStatusContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        return containerFactory("updateStudentStatus", configurer, connectionFactory);
+    }
+
+    @Bean("notifyBookingStartContainerFactory")
+    public SimpleRabbitListenerContainerFactory notifyBookingStartContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        return containerFactory("notifyBookingStart", configurer, connectionFactory);
+    }
+
+
+    @Bean("websiteDataTransferContainerFactory")
+    public SimpleRabbitListenerContainerFactory websiteDataTransferContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        return containerFactory("websiteDataTransfer", configurer, connectionFactory);
+    }
+
+    /**
+     * Builds the listener container factory of a queue from the Spring Boot listener settings and the queue's tuning.
+     * Consumers start at the minimum and may grow to the maximum, the floor in between is moved by the
+     * {@link ListenerConcurrencyScaler} with the timing of the handler.
+     * Deliveries are acknowledged manually by the {@link ListenerAcknowledger}, after the handler has committed.
+     */
+    private SimpleRabbitListenerContainerFactory containerFactory(String name, SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        AMQPListener listener = amqpConfiguration.getListener(name);
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(listener.getMinConsumers());
+        factory.setMaxConcurrentConsumers(Math.max(listener.getMinConsumers(), listener.getMaxConsumers()));
+        factory.setPrefetchCount(listener.getPrefetch());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setAdviceChain(listenerConcurrencyScaler.timing(name), listenerAcknowledger.acknowledging());
+        return factory;
+    }
+
+    /**
+     * Builds a listener container factory that hands up to the queue's batch size of job IDs to one listener call.
+     * A consumer collects messages until the batch is full or the receive timeout passes, so the prefetch is
+     * raised to at least the batch size.
+     */
+    private SimpleRabbitListenerContainerFactory batchContainerFactory(String name, SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        AMQPListener listener = amqpConfiguration.getListener(name);
+        SimpleRabbitListenerContainerFactory factory = containerFactory(name, configurer, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(Math.max(1, listener.getBatchSize()));
+        factory.setPrefetchCount(Math.max(listener.getPrefetch(), listener.getBatchSize()));
+        return factory;
+    }
+
+
+
     @Bean("exchange")
     public TopicExchange exchange() {
         return new TopicExchange(amqpConfiguration.getExchange());
     }
 
+    /**
+     * Declares the delayed retry topology of every work queue on the retry exchange, see {@link JobRetryPublisher}.
+     * A delay queue per retry attempt holds the retries until they expire and dead-letters them to the job exchange
+     * with the routing key of the work queue; the parking queue collects the jobs past the retry limit.
+     * The work queues themselves keep their arguments, a queue cannot be declared again with different ones.
+     */
+    @Bean("retryTopology")
+    public Declarables retryTopology() {
+        DirectExchange retryExchange = new DirectExchange(JobRetryPublisher.retryExchange(amqpConfiguration.getExchange()));
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(retryExchange);
+
+        workQueues().forEach((queueName, routingKey) -> {
+            for (int attempts = 1; attempts < amqpConfiguration.getRetryLimit(); attempts++) {
+                Queue delayQueue = QueueBuilder
+                        .durable(JobRetryPublisher.retryQueue(queueName, attempts))
+                        .deadLetterExchange(amqpConfiguration.getExchange())
+                        .deadLetterRoutingKey(routingKey)
+                        .build();
+                declarables.add(delayQueue);
+                declarables.add(BindingBuilder.bind(delayQueue).to(retryExchange).with(JobRetryPublisher.retryRoutingKey(routingKey, attempts)));
+            }
+
+            Queue parkingQueue = QueueBuilder.durable(JobRetryPublisher.parkingQueue(queueName)).build();
+            declarables.add(parkingQueue);
+            declarables.add(BindingBuilder.bind(parkingQueue).to(retryExchange).with(JobRetryPublisher.parkingRoutingKey(routingKey)));
+        });
+        return new Declarables(declarables);
+    }
+
+    /**
+     * @return The routing key of every work queue, by the name of the queue.
+     */
+    private Map<String, String> workQueues() {
+        AMQPType queue = amqpConfiguration.getQueue();
+        AMQPType routingKey = amqpConfiguration.getRoutingKey();
+        Map<String, String> workQueues = new LinkedHashMap<>();
+        workQueues.put(queue.getStandard(), routingKey.getStandard());
+        workQueues.put(queue.getMailer(), routingKey.getMailer());
+        workQueues.put(queue.getReleaseCriteriaMarker(), routingKey.getReleaseCriteriaMarker());
+        workQueues.put(queue.getCertificateReleaser(), routingKey.getCertificateReleaser());
+        workQueues.put(queue.getWebsiteDataTransfer(), routingKey.getWebsiteDataTransfer());
+        workQueues.put(queue.getUpdateExpiryStatus(), routingKey.getUpdateExpiryStatus());
+        workQueues.put(queue.getExpiryReminderMail(), routingKey.getExpiryReminderMail());
+        workQueues.put(queue.getUpdateStudentStatus(), routingKey.getUpdateStudentStatus());
+        workQueues.put(queue.getNotifyBookingStart(), routingKey.getNotifyBookingStart());
+        return workQueues;
+    }
+
     @Bean("converter")
     public MessageConverter converter() {
         return new Jackson2JsonMessageConverter();
@@ -0,0 +1,23 @@
+package com.sprk.service.scheduler.consumer;
+
+import com.sprk.commons.entity.mq.JobModel;
+
+
+
+/**
+ * The work of a chunked job, executed one chunk at a time by {@link JobExecutor#chunkedExecutor(Long, Integer, ChunkProvider)}.
+ * The items of the job are walked in a stable order, and the cursor is the key of the last item of a chunk.
+ */
+@FunctionalInterface
+public interface ChunkProvider {
+
+    /**
+     * Processes the next chunk of the job.
+     *
+     * @param job The job being executed.
+     * @param after The cursor of the last committed chunk, or null to start from the first item.
+     * @param chunkSize The maximum number of items to process.
+     * @return The cursor of the last item processed, or null if there was nothing left after the given cursor.
+     */
+    String execute(JobModel job, String after, int chunkSize) throws Exception;
+}
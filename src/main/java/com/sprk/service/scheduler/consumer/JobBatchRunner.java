@@ -0,0 +1,113 @@
+package com.sprk.service.scheduler.consumer;
+
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.commons.entity.mq.tag.JobStatus;
+import com.sprk.commons.experimental.ImplProvider;
+import com.sprk.service.scheduler.dao.JPAProxy;
+import com.sprk.service.scheduler.service.JobProcessor;
+import com.sprk.service.scheduler.service.JobRetryPublisher;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+
+
+/**
+ * Runs the jobs of a batch delivery, the work of each job in a transaction of its own and the outcomes of the
+ * whole batch in one. A job whose work fails, or leaves its transaction rollback-only, rolls back its own writes
+ * and none of the others, while the statuses of the batch still go out as batched updates.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class JobBatchRunner {
+
+    private final JPAProxy jpaProxy;
+    private final JobProcessor jobProcessor;
+    private final JobRetryPublisher jobRetryPublisher;
+    private final JobWatchdog jobWatchdog;
+
+
+
+    /**
+     * Runs the work of a single job of the batch. It gets the time budget of its job type, a run that overruns
+     * it is cancelled and rolled back.
+     *
+     * @param job The job being executed.
+     * @param implProvider The work of the job.
+     */
+    @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    public void runJob(JobModel job, ImplProvider<JobModel> implProvider) throws Exception {
+        JobWatchdog.Watch watch = jobWatchdog.watch(job);
+        try (watch) {
+            implProvider.execute(job);
+            watch.checkpoint();
+        } catch (Exception exception) {
+            throw watch.isExpired() ? watch.timeout(exception) : exception;
+        }
+    }
+
+
+
+    /**
+     * Writes the outcomes of the executed jobs back together. The jobs are loaded with one query, their statuses
+     * saved as batched updates and their next fire times recomputed in one pass. A job that is no longer RUNNING
+     * on the attempt it was executed for has been reaped or claimed again in the meantime and is left alone.
+     *
+     * @param executedJobs The executed jobs, as they were claimed.
+     * @param failures The exception each failed job ended with, by job ID; the other jobs succeeded.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRES_NEW
+    )
+    public void saveOutcomes(List<JobModel> executedJobs, Map<Long, Exception> failures) {
+        Map<Long, JobModel> jobs = jpaProxy.getJobsByIds(executedJobs.stream().map(JobModel::getId).toList())
+                .stream()
+                .collect(Collectors.toMap(JobModel::getId, job -> job));
+
+        List<JobModel> finishedJobs = new ArrayList<>();
+        Map<Long, Exception> permanentFailures = new HashMap<>();
+        for (JobModel executedJob : executedJobs) {
+            JobModel job = jobs.get(executedJob.getId());
+            if (null == job || !JobStatus.RUNNING.equals(job.getStatus()) || !Objects.equals(executedJob.getAttempts(), job.getAttempts())) {
+                log.warn("Job ({}) was taken over while it was executed, its outcome is not saved.", executedJob.getId());
+                continue;
+            }
+
+            Exception exception = failures.get(job.getId());
+            if (null == exception) {
+                job.setStatus(JobStatus.SUCCESS);
+            } else {
+                // A transient failure costs one attempt and a permanent one all of them
+                JobFailure failure = JobFailure.classify(exception);
+                jobProcessor.fail(job, failure);
+                if (JobFailure.PERMANENT == failure) {
+                    permanentFailures.put(job.getId(), exception);
+                }
+            }
+            finishedJobs.add(job);
+        }
+
+        if (finishedJobs.isEmpty()) {
+            return;
+        }
+
+        jpaProxy.saveJobs(finishedJobs);
+        jobProcessor.reschedule(finishedJobs);
+        permanentFailures.forEach(jobProcessor::quarantine);
+        finishedJobs.forEach(jobRetryPublisher::publishAfterCommit);
+    }
+}
@@ -0,0 +1,52 @@
+package com.sprk.service.scheduler.consumer;
+
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.service.scheduler.dao.JPAProxy;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+
+
+/**
+ * Runs a single chunk of a chunked job in its own transaction.
+ * The work of the chunk and the checkpoint pointing past it commit together, so a failed chunk leaves
+ * neither behind and the retry resumes from the last chunk that did commit.
+ */
+@Component
+@RequiredArgsConstructor
+public class JobChunkRunner {
+
+    private final JPAProxy jpaProxy;
+    private final JobWatchdog jobWatchdog;
+
+
+
+    /**
+     * Each chunk gets the time budget of the job type, a chunk that overruns it is cancelled and rolled back.
+     *
+     * @param job The job being executed.
+     * @param after The cursor of the last committed chunk, or null to start from the first item.
+     * @param chunkSize The maximum number of items to process.
+     * @param chunkProvider The work of the job.
+     * @return The cursor of the chunk that was committed, or null if the job has no items left.
+     */
+    @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    public String runChunk(JobModel job, String after, int chunkSize, ChunkProvider chunkProvider) throws Exception {
+        JobWatchdog.Watch watch = jobWatchdog.watch(job);
+        try (watch) {
+            String cursor = chunkProvider.execute(job, after, chunkSize);
+            watch.checkpoint();
+            if (null != cursor) {
+                jpaProxy.saveJobCheckpoint(job.getId(), cursor);
+            }
+            return cursor;
+        } catch (Exception exception) {
+            throw watch.isExpired() ? watch.timeout(exception) : exception;
+        }
+    }
+}
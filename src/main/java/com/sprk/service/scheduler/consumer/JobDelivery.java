@@ -0,0 +1,28 @@
+package com.sprk.service.scheduler.consumer;
+
+import com.sprk.service.scheduler.service.JobProcessor;
+import com.sprk.service.scheduler.service.JobRetryPublisher;
+
+import java.util.Map;
+
+
+
+/**
+ * What the headers of a job message tell about the run it was published for.
+ *
+ * @param attempt The attempt the message was published for, or null for messages without the header.
+ * @param retry true if the message is a delayed retry of a FAILED job, false if the scheduler claimed the job.
+ * @param claimToken The token of the claim the message was published for, or null for messages without the header.
+ */
+public record JobDelivery(Integer attempt, boolean retry, String claimToken) {
+
+    public static JobDelivery of(Map<String, Object> headers) {
+        Object attempt = headers.get(JobProcessor.ATTEMPT_HEADER);
+        Object claimToken = headers.get(JobProcessor.CLAIM_HEADER);
+        return new JobDelivery(
+                attempt instanceof Number number ? number.intValue() : null,
+                Boolean.TRUE.equals(headers.get(JobRetryPublisher.RETRY_HEADER)),
+                null == claimToken ? null : claimToken.toString()
+        );
+    }
+}
@@ -1,8 +1,8 @@
 package com.sprk.service.scheduler.consumer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 
-import com.sprk.commons.dao.JobProxy;
 import com.sprk.commons.dto.APIResponse;
 import com.sprk.commons.dto.amqp.AddStartDateForCertificationStatusDTO;
 import com.sprk.commons.entity.mq.JobModel;
@@ -34,9 +34,18 @@ import com.sprk.commons.exception.ResourceNotFoundException;
 import com.sprk.commons.experimental.ImplProvider;
 import com.sprk.service.scheduler.dao.JPAProxy;
 import com.sprk.commons.dto.amqp.ExamStatusChangeDTO;
+import com.sprk.service.scheduler.dto.payload.MailRequest;
 import com.sprk.service.scheduler.dto.procedure.SPGetAttendanceAllStudentsForBatch;
+import com.sprk.service.scheduler.properties.mailer.EMailerConfigProperties;
+import com.sprk.service.scheduler.properties.scheduler.SchedulerConfigProperties;
 import com.sprk.service.scheduler.repository.primary.*;
 import com.sprk.service.scheduler.repository.website.CertificateWRepository;
+import com.sprk.service.scheduler.service.JobHeartbeat;
+import com.sprk.service.scheduler.service.JobOutbox;
+import com.sprk.service.scheduler.service.JobProcessor;
+import com.sprk.service.scheduler.service.JobRetryPublisher;
+import com.sprk.service.scheduler.service.MailOutbox;
+import com.sprk.service.scheduler.tag.MailOutboxStatus;
 import com.sprk.service.scheduler.util.EMailTemplates;
 import com.sprk.service.scheduler.util.JsonConverter;
 import com.sprk.service.scheduler.util.MailerWizard;
@@ -56,11 +65,16 @@ import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.*;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.annotation.Headers;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
@@ -69,9 +83,11 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 
@@ -84,7 +100,17 @@ public class JobExecutor {
     private static final String DEFAULT_JOB_LOGGER_MESSAGE = "Executing job ({}) --- {}";
     private final RestTemplate loadBalancedRestTemplate;
     private final JPAProxy jpaProxy;
-    private final JobProxy jobProxy;
+    private final JobProcessor jobProcessor;
+    private final JobOutbox jobOutbox;
+    private final MailOutbox mailOutbox;
+    private final JobRetryPublisher jobRetryPublisher;
+    private final JobHeartbeat jobHeartbeat;
+    private final JobWatchdog jobWatchdog;
+    private final JobTimeoutRecorder jobTimeoutRecorder;
+    private final JobChunkRunner jobChunkRunner;
+    private final JobBatchRunner jobBatchRunner;
+    private final SchedulerConfigProperties schedulerConfigProperties;
+    private final EMailerConfigProperties eMailerConfigProperties;
     private final MailerWizard mailer;
     private final TextWizard textHelper;
     private final TaskExecutor taskExecutor;
@@ -101,6 +127,7 @@ public class JobExecutor {
     private final OrganizationRepository organizationRepository;
     private final NotificationRepository notificationRepository;
     private final NotificationUserRepository notificationUserRepository;
+    private final Clock clock;
 
 
     @Value("${app.email.certificate.download}")
@@ -126,11 +153,12 @@ public class JobExecutor {
      * by making appropriate HTTP calls. It is transactional with serializable isolation to ensure
      * consistency in job execution.
      * @param jobId The ID of the job to be executed.
+     * @param messageHeaders The headers of the message, telling the attempt it was published for and whether it is a retry.
      */
-    @RabbitListener(queues = "#{standardQueue.getName()}")
+    @RabbitListener(id = "standard", queues = "#{standardQueue.getName()}", containerFactory = "standardContainerFactory")
     @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRED)
-    public void executeStandardJobs(Long jobId) {
-        executor(jobId, (job) -> {
+    public void executeStandardJobs(Long jobId, @Headers Map<String, Object> messageHeaders) {
+        executor(jobId, JobDelivery.of(messageHeaders), (job) -> {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             switch (job.getJobType()) {
@@ -151,13 +179,13 @@ public class JobExecutor {
                                 .stream()
                                 .map(EmailTemplateDTO::getRecipient)
                                 .collect(Collectors.joining(", "));
-                        jobProxy.addJobInDB(
+                        jobOutbox.addJob(
                                 "Sending reminders to students for upcoming payment due date (10 Feb) with pattern of (30-31, 1, 3, 5, 7, 8, 9, 10)",
                                 "Scheduled emails to be sent to " + emails,
                                 jsonConverter.convertListToJsonString(templates),
                                 JobType.EMAIL,
                                 ScheduleType.ONCE,
-                                Instant.now(),
+                                Instant.now(clock),
                                 null,
                                 null
                         );
@@ -207,17 +235,18 @@ public class JobExecutor {
      * consistent execution of mailer jobs.
      *
      * @param jobId The ID of the job to be executed.
+     * @param messageHeaders The headers of the message, telling the attempt it was published for and whether it is a retry.
      */
-    @RabbitListener(queues = "#{mailerQueue.getName()}")
+    @RabbitListener(id = "mailer", queues = "#{mailerQueue.getName()}", containerFactory = "mailerContainerFactory")
     @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRED)
-    public void executeMailerJobs(Long jobId) {
+    public void executeMailerJobs(Long jobId, @Headers Map<String, Object> messageHeaders) {
         // Execute the job based on its ID.
-        executor(jobId, (job) -> {
-            // Convert the JSON data of the job into a list of EmailTemplateDTO objects.
-            List<EmailTemplateDTO> templates = Optional.ofNullable(job.getJsonData())
+        executor(jobId, JobDelivery.of(messageHeaders), (job) -> {
+            // Parse the JSON data of the job into a list of mails.
+            List<JsonNode> mails = Optional.ofNullable(job.getJsonData())
                     .map(jsonString -> {
                         try {
-                            return jsonConverter.convertToList(jsonString, EmailTemplateDTO.class);
+                            return jsonConverter.convertToList(jsonString, JsonNode.class);
                         } catch (IOException exception) {
                             // Handle JSON conversion errors.
                             return null;
@@ -225,8 +254,13 @@ public class JobExecutor {
                     })
                     .orElseThrow();
 
-            // Send emails based on the extracted templates.
-            sendMails(templates, job.getId());
+            // Mails added by the scheduler carry a template and its parameters and are rendered as they are sent,
+            // mails of other services (and of jobs added before) carry the rendered EmailTemplateDTO.
+            if (mails.stream().allMatch(mail -> mail.has("template"))) {
+                sendMails(jsonConverter.convertNodes(mails, MailRequest.class), eMailTemplates::render, MailRequest::getRecipient, job.getId());
+            } else {
+                sendMails(jsonConverter.convertNodes(mails, EmailTemplateDTO.class), job.getId());
+            }
         });
     }
 
@@ -236,19 +270,31 @@ public class JobExecutor {
      * RabbitMQ Listener method that listens to messages from the websiteDataTransferQueue.
      * This method processes certificates, compares existing and new certificate data,
      * and updates or saves the certificates as required.
-     * The process is transactional, ensuring data consistency using SERIALIZABLE isolation level.
+     * The certificates are transferred in chunks ordered by their UID, each chunk committed separately
+     * using SERIALIZABLE isolation level.
      *
      * @param jobId The job ID passed through RabbitMQ, representing the task to be executed.
+     * @param messageHeaders The headers of the message, telling the attempt it was published for and whether it is a retry.
      */
-    @RabbitListener(queues = "#{websiteDataTransferQueue.getName()}")
-    @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRED)
-    public void websiteDataTransfer(Long jobId) {
+    @RabbitListener(id = "websiteDataTransfer", queues = "#{websiteDataTransferQueue.getName()}", containerFactory = "websiteDataTransferContainerFactory")
+    public void websiteDataTransfer(Long jobId, @Headers Map<String, Object> messageHeaders) {
 
-        // Executor to handle the task for the given jobId
-        executor(jobId, (job) -> {
+        // Executor to handle the task for the given jobId, one chunk of certificates at a time
+        chunkedExecutor(jobId, JobDelivery.of(messageHeaders), (job, after, chunkSize) -> {
 
-            // Fetch all existing CertificateWModel entities from the database.
-            List<CertificateWModel> existingCertificateWModel = certificateWRepository.findAll();
+            // Fetch the next chunk of CertificateModel entities (representing new certificate data).
+            List<CertificateModel> existingCertificate = certificateRepository.findByCertificateUidGreaterThanOrderByCertificateUidAsc(
+                    null == after ? "" : after,
+                    PageRequest.of(0, chunkSize)
+            );
+            if (existingCertificate.isEmpty()) {
+                return null;
+            }
+
+            // Fetch the CertificateWModel entities already transferred for this chunk.
+            List<CertificateWModel> existingCertificateWModel = certificateWRepository.findAllByCertificateUidIn(
+                    existingCertificate.stream().map(CertificateModel::getCertificateUid).toList()
+            );
 
             // Map of certificate UIDs to their current status for quick lookup.
             Map<String, CertificateStatus> certificateWStatusMap = existingCertificateWModel.stream()
@@ -269,9 +315,6 @@ public class JobExecutor {
             // List to store certificates that need to be updated.
             List<CertificateWModel> certificateWToBeUpdated = new ArrayList<>();
 
-            // Fetch all existing CertificateModel entities (representing new certificate data).
-            List<CertificateModel> existingCertificate = certificateRepository.findAll();
-
             // Filter, map, and collect certificates to be saved to CertificateWModel format.
             List<CertificateWModel> certificateWToBeSaved = existingCertificate.stream()
                     .filter(certificate -> {
@@ -352,6 +395,7 @@ public class JobExecutor {
                 log.info("Certificate saved sucessfully ("+savedCertificateID+").");
             }
 
+            return existingCertificate.get(existingCertificate.size() - 1).getCertificateUid();
         });
 
     }
@@ -360,20 +404,21 @@ public class JobExecutor {
 
 
     /**
-     * Processes and executes release criteria marker jobs based on the provided job ID.
+     * Processes and executes release criteria marker jobs based on the provided job IDs.
      *
      * This method listens for messages on the RabbitMQ queue associated with release criteria marker jobs.
      * It processes the job based on its type and performs various operations such as updating clearance statuses,
-     * computing grades, and handling certification processes. It is transactional with serializable isolation
-     * to ensure consistent execution and integrity of release criteria marker jobs.
+     * computing grades, and handling certification processes. The work of each job runs in its own transaction
+     * with serializable isolation to ensure consistent execution and integrity of release criteria marker jobs.
+     * The listener runs in batch mode, so one delivery carries up to the configured batch size of job IDs, which
+     * are loaded and have their outcomes saved together.
      *
-     * @param jobId The ID of the job to be executed.
+     * @param messages The messages of the delivery, each carrying the ID of a job to be executed.
      */
-    @RabbitListener(queues = "#{releaseCriteriaMarkerQueue.getName()}")
-    @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRED)
-    public void executeReleaseCriteriaMarkerJobs(Long jobId) {
-        // Execute the job based on its ID.
-        executor(jobId, (job) -> {
+    @RabbitListener(id = "releaseCriteriaMarker", queues = "#{releaseCriteriaMarkerQueue.getName()}", containerFactory = "releaseCriteriaMarkerContainerFactory")
+    public void executeReleaseCriteriaMarkerJobs(List<Message<Long>> messages) {
+        // Execute the jobs of the delivery together, the work of each in a transaction of its own.
+        batchExecutor(messages, (job) -> {
             JobType jobType = job.getJobType();
             switch (jobType) {
                 // Handling MARK_ELIGIBILITY_ACADEMICS_THEORY and MARK_ELIGIBILITY_ACADEMICS_PROJECT jobs
@@ -425,7 +470,7 @@ public class JobExecutor {
                                 log.info("inner mapping found {}, PROJECT {}, THEORY {}", courseCertificateMappings.size(), isProjectCleared, isTheoryCleared);
 
                                 if (isTheoryCleared && isProjectCleared) {
-                                    mapping.setAcademicsClearedAt(Instant.now());
+                                    mapping.setAcademicsClearedAt(Instant.now(clock));
                                 }
 
                                 if (isProjectCleared) {
@@ -524,7 +569,7 @@ public class JobExecutor {
                     List<BookingCertificateStatusMapping> certificateStatusMappings = certificateStatusMappingRepository.findAllMappingsWithoutStartDate(data.getStudents(), data.getCourse());
                     certificateStatusMappings.forEach(mapping -> {
                         if (null == mapping.getCertificateStartAt()) {
-                            mapping.setCertificateStartAt(Instant.now());
+                            mapping.setCertificateStartAt(Instant.now(clock));
                         }
                     });
                     certificateStatusMappingRepository.saveAll(certificateStatusMappings);
@@ -564,13 +609,14 @@ public class JobExecutor {
      * The process is transactional to ensure data integrity and consistency.
      *
      * @param jobId The job ID passed through RabbitMQ, representing the task to be executed.
+     * @param messageHeaders The headers of the message, telling the attempt it was published for and whether it is a retry.
      */
-    @RabbitListener(queues = "#{updateStudentStatusQueue.getName()}")
+    @RabbitListener(id = "updateStudentStatus", queues = "#{updateStudentStatusQueue.getName()}", containerFactory = "updateStudentStatusContainerFactory")
     @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRED)
-    public void executeUpdateStudentStatusJob(Long jobId){
+    public void executeUpdateStudentStatusJob(Long jobId, @Headers Map<String, Object> messageHeaders){
 
         // Execute the task within the context of the given jobId
-        executor(jobId, (job) -> {
+        executor(jobId, JobDelivery.of(messageHeaders), (job) -> {
 
             // Fetch the organization model with ID 1 (assumed to be the primary organization)
             Optional<OrganizationModel> organization = organizationRepository.findById(1L);
@@ -610,7 +656,7 @@ public class JobExecutor {
                         .map(String::valueOf)
                         .collect(Collectors.joining(", "));
 
-                log.info("Status of students (" + studentIds + ") updated as FINANCIAL DROPOUT at " + Instant.now());
+                log.info("Status of students (" + studentIds + ") updated as FINANCIAL DROPOUT at " + Instant.now(clock));
             }
 
         });
@@ -625,13 +671,14 @@ public class JobExecutor {
      * The process is transactional to ensure data integrity and consistency.
      *
      * @param jobId The job ID passed through RabbitMQ, representing the task to be executed.
+     * @param messageHeaders The headers of the message, telling the attempt it was published for and whether it is a retry.
      */
-    @RabbitListener(queues = "#{expiryReminderMailQueue.getName()}")
+    @RabbitListener(id = "expiryReminderMail", queues = "#{expiryReminderMailQueue.getName()}", containerFactory = "expiryReminderMailContainerFactory")
     @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRED)
-    public void executeBookingExpiryReminderMailJob(Long jobId){
+    public void executeBookingExpiryReminderMailJob(Long jobId, @Headers Map<String, Object> messageHeaders){
 
         // Execute the task within the context of the given jobId
-        executor(jobId, (job) -> {
+        executor(jobId, JobDelivery.of(messageHeaders), (job) -> {
 
             // Fetch all bookings that are about to expire, based on the following conditions:
             // BookingStatus: ON_GOING, StudentStatus: PASSED_OUT, estimated expiry within 9 days.
@@ -645,7 +692,7 @@ public class JobExecutor {
             Map<String, BookingModel> bookingMap = new HashMap<>();
 
             // Stream through the bookings about to expire, creating email templates for each booking
-            List<EmailTemplateDTO> emailTemplateDTOS = aboutToExpireBookings.stream()
+            List<MailRequest> mailRequests = aboutToExpireBookings.stream()
                     .map(booking -> {
                         // Retrieve the student and organization details for the booking
                         StudentModel student = booking.getStudent();
@@ -682,14 +729,14 @@ public class JobExecutor {
                     }).collect(Collectors.toCollection(ArrayList::new));
 
             // If there are any email templates to send
-            if(!emailTemplateDTOS.isEmpty()){
+            if(!mailRequests.isEmpty()){
 
                 // If there are any user notifications, send them
                 if(!notificationUserMap.isEmpty())
                     sendUserNotificationForAboutToExpireBookings(notificationMap, notificationUserMap, bookingMap);
 
                 // Send the expiry reminder emails
-                sendMails(emailTemplateDTOS, jobId);
+                sendMails(mailRequests, eMailTemplates::render, MailRequest::getRecipient, jobId);
             }
         });
 
@@ -702,23 +749,31 @@ public class JobExecutor {
      * RabbitMQ listener method that processes the job for updating booking statuses to 'EXPIRED'.
      * The method identifies bookings that are still ongoing but have reached their expiration date.
      * It also sends notification emails to students and users (booked by) regarding the expired bookings.
-     * The process is transactional to ensure data consistency.
+     * The bookings are processed in chunks ordered by their ID, each chunk committed in its own transaction.
      *
      * @param jobId The job ID passed through RabbitMQ, representing the task to be executed.
+     * @param messageHeaders The headers of the message, telling the attempt it was published for and whether it is a retry.
      */
-    @RabbitListener(queues = "#{updateExpiryStatusQueue.getName()}")
-    @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRED)
-    public void executeUpdateBookingStatusToExpireJob(Long jobId){
-
-        // Execute the task within the context of the given jobId
-        executor(jobId, (job) -> {
-
-            // Retrieve bookings that are still ongoing and have now expired
-            List<BookingModel> bookingModels = bookingRepository.findDistinctBookingsByBookingStatus(Instant.now(), BookingStatus.ON_GOING);
+    @RabbitListener(id = "updateExpiryStatus", queues = "#{updateExpiryStatusQueue.getName()}", containerFactory = "updateExpiryStatusContainerFactory")
+    public void executeUpdateBookingStatusToExpireJob(Long jobId, @Headers Map<String, Object> messageHeaders){
+
+        // Execute the task within the context of the given jobId, one chunk of bookings at a time
+        chunkedExecutor(jobId, JobDelivery.of(messageHeaders), (job, after, chunkSize) -> {
+
+            // Retrieve the next chunk of bookings that are still ongoing and have now expired
+            List<BookingModel> bookingModels = bookingRepository.findDistinctBookingsByBookingStatus(
+                    Instant.now(clock),
+                    BookingStatus.ON_GOING,
+                    null == after ? 0L : Long.parseLong(after),
+                    PageRequest.of(0, chunkSize)
+            );
+            if (bookingModels.isEmpty()) {
+                return null;
+            }
 
             // Lists to store entities to be updated or used for notifications/emails
             List<BookingCourseGroupMapping> bookingCourseGroupMappingsToBeExpired = new ArrayList<>();
-            List<EmailTemplateDTO> emailTemplateDTOS = new ArrayList<>();
+            List<MailRequest> mailRequests = new ArrayList<>();
 
             // Maps to manage notifications and emails for users and bookings
             Map<Long, List<String>> notificationMap = new HashMap<>();
@@ -778,7 +833,7 @@ public class JobExecutor {
                         bookingCourseGroupMappingsToBeExpired.addAll(activeCourseGroupMappings);
 
                         // Prepare an email template for the expired booking
-                        emailTemplateDTOS.add(eMailTemplates.getCourseExpiredEmail(
+                        mailRequests.add(eMailTemplates.getCourseExpiredEmail(
                                 studentFullName,
                                 bookingId,
                                 formattedExpiryDate,
@@ -795,7 +850,7 @@ public class JobExecutor {
                         bookingMap.putIfAbsent(bookingId, bookingModel);
 
                         // Log the update of booking status
-                        log.info("Booking status of "+bookingId+" updated to expired at "+Instant.now());
+                        log.info("Booking status of "+bookingId+" updated to expired at "+Instant.now(clock));
                     }
                 }
             }
@@ -809,11 +864,12 @@ public class JobExecutor {
                     sendUserNotificationForExpiredBookings(notificationMap, notificationUserMap, bookingMap);
 
                 // If there are emails to be sent, send the emails
-                if(!emailTemplateDTOS.isEmpty()){
-                    sendMails(emailTemplateDTOS, jobId);
+                if(!mailRequests.isEmpty()){
+                    sendMails(mailRequests, eMailTemplates::render, MailRequest::getRecipient, jobId);
                 }
             }
 
+            return String.valueOf(bookingModels.get(bookingModels.size() - 1).getBookingId());
         });
     }
 
@@ -825,13 +881,14 @@ public class JobExecutor {
      * who made the bookings. The process is transactional to ensure data consistency.
      *
      * @param jobId The job ID passed through RabbitMQ, representing the task to be executed.
+     * @param messageHeaders The headers of the message, telling the attempt it was published for and whether it is a retry.
      */
-    @RabbitListener(queues = "#{notifyBookingStartQueue.getName()}")
+    @RabbitListener(id = "notifyBookingStart", queues = "#{notifyBookingStartQueue.getName()}", containerFactory = "notifyBookingStartContainerFactory")
     @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRED)
-    public void executeNotifyBookingStartJob(Long jobId){
+    public void executeNotifyBookingStartJob(Long jobId, @Headers Map<String, Object> messageHeaders){
 
         // Execute the task within the context of the given jobId
-        executor(jobId, (job) -> {
+        executor(jobId, JobDelivery.of(messageHeaders), (job) -> {
 
             // Retrieve bookings that have a start date within 4 days of the current UTC date and are ongoing
             List<BookingModel> bookings = bookingRepository.findBookingsByStartDate(BookingStatus.ON_GOING, getCurrentUtcDate(), 4);
@@ -1159,7 +1216,7 @@ public class JobExecutor {
         if (!CertificateReleaseStatus.RELEASED.equals(releaseStatusSupplier.get())) {
             // Update release status to READY and set the ready timestamp to the current time
             releaseStatusConsumer.accept(CertificateReleaseStatus.READY);
-            readyAtConsumer.accept(Instant.now());
+            readyAtConsumer.accept(Instant.now(clock));
         }
 
         // Retrieve the booking model associated with the mapping
@@ -1300,26 +1357,37 @@ public class JobExecutor {
      * Processes certificate releasing jobs. This method is triggered by messages from the RabbitMQ queue
      * specified by `certificateReleaserQueue`. It performs various tasks related to certificate issuance
      * including fetching data, processing certificate statuses, updating repositories, and scheduling email jobs.
+     * The ongoing bookings are processed in chunks ordered by their ID, each chunk committed in its own transaction.
      *
      * @param jobId The ID of the job to process.
+     * @param messageHeaders The headers of the message, telling the attempt it was published for and whether it is a retry.
      */
-    @RabbitListener(queues = "#{certificateReleaserQueue.getName()}")
-    @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRED)
-    public void executeCertificateReleaserJobs(Long jobId) {
-        executor(jobId, (job) -> {
+    @RabbitListener(id = "certificateReleaser", queues = "#{certificateReleaserQueue.getName()}", containerFactory = "certificateReleaserContainerFactory")
+    public void executeCertificateReleaserJobs(Long jobId, @Headers Map<String, Object> messageHeaders) {
+        chunkedExecutor(jobId, JobDelivery.of(messageHeaders), (job, after, chunkSize) -> {
+            // Fetch the next chunk of bookings with ongoing booking-course-group mappings
+            List<Long> bookingIds = bookingCourseGroupMappingRepository.findBookingIdsByStatus(
+                    BookingStatus.ON_GOING,
+                    null == after ? 0L : Long.parseLong(after),
+                    PageRequest.of(0, chunkSize)
+            );
+            if (bookingIds.isEmpty()) {
+                return null;
+            }
+
             // Initialize lists and maps to track various entities and email templates
             ArrayList<BookingModel> bookings = new ArrayList<>();
             ArrayList<Long> students = new ArrayList<>();
             ArrayList<BookingCourseGroupMapping> courseGroupMappings = new ArrayList<>();
             ArrayList<BookingCertificateStatusMapping> certificateMappings = new ArrayList<>();
             HashMap<BookingCertificateStatusMapping, CertificateModel> certificates = new HashMap<>();
-            ArrayList<EmailTemplateDTO> onHoldTemplates = new ArrayList<>();
-            ArrayList<EmailTemplateDTO> confirmationTemplates = new ArrayList<>();
-            ArrayList<EmailTemplateDTO> releasedTemplates = new ArrayList<>();
+            ArrayList<MailRequest> onHoldTemplates = new ArrayList<>();
+            ArrayList<MailRequest> confirmationTemplates = new ArrayList<>();
+            ArrayList<MailRequest> releasedTemplates = new ArrayList<>();
 
-            // Fetch all releasable booking-course-group mappings that are ongoing
+            // Fetch the releasable booking-course-group mappings of the chunk that are ongoing
             List<ImmutableTriple<String, String, String>> mappings = bookingCourseGroupMappingRepository
-                    .findAllByReleasableTrue(BookingStatus.ON_GOING)
+                    .findAllByReleasableTrue(BookingStatus.ON_GOING, bookingIds)
                     .stream()
                     .collect(Collectors.groupingBy(
                             BookingCourseGroupMapping::getBooking,
@@ -1385,7 +1453,7 @@ public class JobExecutor {
                             EnquiryModel enquiry = student.getEnquiry();
                             OrganizationModel organization = enquiry.getOrganization();
 
-                            Instant supposeToBeReleased = Instant.now().plus(Duration.ofDays(organization.getCertificateReleaseInDays()));
+                            Instant supposeToBeReleased = Instant.now(clock).plus(Duration.ofDays(organization.getCertificateReleaseInDays()));
                             String studentName = textHelper.concatenateStrings(
                                     " ",
                                     enquiry.getStudentFirstname(),
@@ -1414,7 +1482,7 @@ public class JobExecutor {
                         return entry;
                     })
                     .filter(entry -> {
-                        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+                        LocalDateTime now = LocalDateTime.now(clock);
                         // Filter out mappings where release date is after the current time
                         return entry.getValue().stream().noneMatch(statusMapping -> {
                             LocalDateTime supposeToBeReleased = statusMapping.getToBeReleasedAt().atZone(ZoneId.of("UTC")).toLocalDate().atStartOfDay();
@@ -1526,48 +1594,48 @@ public class JobExecutor {
 
             // Add jobs to send email notifications
             if (!confirmationTemplates.isEmpty()) {
-                jobProxy.addJobInDB(
+                jobOutbox.addJob(
                         "Email to student confirmation before releasing certificate.",
                         ("Send email to " + onHoldTemplates.stream()
-                                .map(EmailTemplateDTO::getRecipient)
+                                .map(MailRequest::getRecipient)
                                 .collect(Collectors.joining(", "))
                         ),
                         jsonConverter.getJsonStringFromList(confirmationTemplates),
                         JobType.EMAIL,
                         ScheduleType.ONCE,
-                        Instant.now(),
+                        Instant.now(clock),
                         null,
                         null
                 );
             }
 
             if (!onHoldTemplates.isEmpty()) {
-                jobProxy.addJobInDB(
+                jobOutbox.addJob(
                         "Email to the students regarding certificate release has been put on hold.",
                         ("Send email to " + onHoldTemplates.stream()
-                                .map(EmailTemplateDTO::getRecipient)
+                                .map(MailRequest::getRecipient)
                                 .collect(Collectors.joining(", "))
                         ),
                         jsonConverter.getJsonStringFromList(onHoldTemplates),
                         JobType.EMAIL,
                         ScheduleType.ONCE,
-                        Instant.now(),
+                        Instant.now(clock),
                         null,
                         null
                 );
             }
 
             if (!releasedTemplates.isEmpty()) {
-                jobProxy.addJobInDB(
+                jobOutbox.addJob(
                         "Email to the students regarding the release of their certificate according to the specified schedule.",
                         ("Send email to " + releasedTemplates.stream()
-                                .map(EmailTemplateDTO::getRecipient)
+                                .map(MailRequest::getRecipient)
                                 .collect(Collectors.joining(", "))
                         ),
                         jsonConverter.getJsonStringFromList(releasedTemplates),
                         JobType.EMAIL,
                         ScheduleType.ONCE,
-                        Instant.now(),
+                        Instant.now(clock),
                         null,
                         null
                 );
@@ -1579,8 +1647,10 @@ public class JobExecutor {
                     tripleValues.getLeft(),
                     tripleValues.getMiddle(),
                     tripleValues.getRight(),
-                    Instant.now()
+                    Instant.now(clock)
             ));
+
+            return String.valueOf(bookingIds.get(bookingIds.size() - 1));
         });
     }
 
@@ -1620,46 +1690,78 @@ public class JobExecutor {
 
 
     /**
-     * Sends emails asynchronously using a list of email templates. If any email fails to send,
-     * the failure details are logged, and a job is added to the database to handle the failed emails.
+     * Sends emails asynchronously using a list of email templates. The templates are sent in chunks, each chunk
+     * back to back over one pooled SMTP connection and the chunks in parallel. If any email fails to send,
+     * the failure details are logged, and a job to handle the failed emails is added through the outbox.
      *
      * @param templates A list of {@link EmailTemplateDTO} containing the email details to be sent.
      * @param jobId The job ID for logging and tracking purposes.
      * @throws JsonProcessingException If there is an error processing the JSON for the failed emails.
      */
     public void sendMails(List<EmailTemplateDTO> templates, Long jobId) throws JsonProcessingException {
-        // Concurrent map to store failed email templates and their failure reasons
-        ConcurrentHashMap<EmailTemplateDTO, String> failedTemplates = new ConcurrentHashMap<>();
+        sendMails(templates, Function.identity(), EmailTemplateDTO::getRecipient, jobId);
+    }
 
-        // Asynchronously send each email template using CompletableFuture
-        List<CompletableFuture<Void>> future = templates.stream().map(template -> CompletableFuture.runAsync(() -> {
-            try {
-                if (mailer.sendMail(template.getRecipient(), template.getSubject(), template.getMessageBody(), template.isHtml(), template.getAttachmentPath())) {
-                    info(jobId, "Sent mail to " + template.getRecipient() + " for " + template.getSubject());
-                } else {
-                    error(jobId, "Failed to send mail " + template.getRecipient() + " for " + template.getSubject());
-                }
-            } catch (Exception e) {
-                failedTemplates.put(template, e.getMessage());
-            }
-        }, taskExecutor)).toList();
+
+
+    /**
+     * Sends mails that are rendered only as their chunk is sent, so at most one chunk of rendered bodies is
+     * held at a time. A mail that cannot be rendered fails on its own, like a mail that cannot be sent.
+     * Every mail that is not sent is added to the {@link MailOutbox}, which retries only those recipients;
+     * a mail that cannot succeed as it is (incomplete or not renderable) is kept there as FAILED.
+     *
+     * @param mails The mails to be sent, e.g. {@link MailRequest}s.
+     * @param renderer Renders a mail into the {@link EmailTemplateDTO} that is sent.
+     * @param recipient The recipient of a mail.
+     * @param jobId The job ID for logging and tracking purposes.
+     * @throws JsonProcessingException If there is an error storing the failed mails as JSON.
+     */
+    public <T> void sendMails(List<T> mails, Function<T, EmailTemplateDTO> renderer, Function<T, String> recipient, Long jobId) throws JsonProcessingException {
+        // Concurrent maps to store the mails that were not sent and the reasons, those worth retrying and those that are not
+        ConcurrentHashMap<T, String> failedTemplates = new ConcurrentHashMap<>();
+        ConcurrentHashMap<T, String> rejectedTemplates = new ConcurrentHashMap<>();
+
+        // Asynchronously send each chunk of email templates using CompletableFuture
+        int batchSize = eMailerConfigProperties.getBatchSize();
+        List<CompletableFuture<Void>> future = IntStream.iterate(0, from -> from < mails.size(), from -> from + batchSize)
+                .mapToObj(from -> mails.subList(from, Math.min(from + batchSize, mails.size())))
+                .map(chunk -> CompletableFuture.runAsync(() -> {
+                    // Render the chunk right before it is sent
+                    List<T> renderedMails = new ArrayList<>(chunk.size());
+                    List<EmailTemplateDTO> templates = new ArrayList<>(chunk.size());
+                    for (T mail : chunk) {
+                        try {
+                            templates.add(renderer.apply(mail));
+                            renderedMails.add(mail);
+                        } catch (Exception e) {
+                            (JobFailure.PERMANENT == JobFailure.classify(e) ? rejectedTemplates : failedTemplates).put(mail, String.valueOf(e.getMessage()));
+                        }
+                    }
+
+                    List<MailerWizard.MailOutcome> outcomes = mailer.sendMails(templates);
+                    for (int index = 0; index < outcomes.size(); index++) {
+                        MailerWizard.MailOutcome outcome = outcomes.get(index);
+                        EmailTemplateDTO template = outcome.template();
+                        switch (outcome.status()) {
+                            case SENT -> info(jobId, "Sent mail to " + template.getRecipient() + " for " + template.getSubject());
+                            case SKIPPED -> rejectedTemplates.put(renderedMails.get(index), "The mail has no recipient, subject or body.");
+                            case FAILED -> failedTemplates.put(renderedMails.get(index), outcome.cause());
+                        }
+                    }
+                }, taskExecutor))
+                .toList();
 
         // Wait for all asynchronous tasks to complete
         CompletableFuture.allOf(future.toArray(new CompletableFuture[0])).join();
 
-        // If there are any failed email templates, log the failures and add a job to handle them
+        // Log the mails that were not sent and keep them in the mail outbox, which retries only the failed ones
         if (!failedTemplates.isEmpty()) {
-            failedTemplates.forEach((template, cause) -> error(jobId, "Task was rejected [" + cause + "] mail to (" + template.getRecipient() + ") for [" + template.getSubject() + "]"));
-            jobProxy.addJobInDB(
-                    "Failed Emails",
-                    failedTemplates.keySet().stream().map(EmailTemplateDTO::getRecipient).collect(Collectors.joining(", ")),
-                    jsonConverter.convertMapToJsonString(failedTemplates),
-                    JobType.FAILED_TEMPLATES,
-                    ScheduleType.ONCE,
-                    Instant.now(),
-                    null,
-                    null
-            );
+            failedTemplates.forEach((mail, cause) -> error(jobId, "Task was rejected [" + cause + "] mail to (" + recipient.apply(mail) + ")"));
+            mailOutbox.addMails(jobId, failedTemplates, recipient, MailOutboxStatus.PENDING);
+        }
+        if (!rejectedTemplates.isEmpty()) {
+            rejectedTemplates.forEach((mail, cause) -> error(jobId, "Failed to send mail [" + cause + "] to (" + recipient.apply(mail) + ")"));
+            mailOutbox.addMails(jobId, rejectedTemplates, recipient, MailOutboxStatus.FAILED);
         }
     }
 
@@ -1668,13 +1770,19 @@ public class JobExecutor {
     /**
      * Executes a job using the provided implementation provider. The job status is updated to RUNNING
      * before execution, and upon completion, the status is updated to either SUCCESS or FAILED based
-     * on the outcome. The job is then saved to the database.
+     * on the outcome. The job is then saved to the database and its next fire time is recomputed.
+     * While the job executes its heartbeat is refreshed, and stale messages (see {@link #isStale(JobModel, JobDelivery)})
+     * are not executed again.
+     * A failure classified as {@link JobFailure#PERMANENT} quarantines the job instead of leaving it to be retried.
+     * A run that overruns the budget of its job type is cancelled by the {@link JobWatchdog} and rolled back,
+     * and recorded as a {@link JobFailure#TIMEOUT}.
      *
      * @param jobId The ID of the job to be executed.
+     * @param delivery The attempt the message was published for and whether it is a delayed retry.
      * @param implProvider The implementation provider that defines the job execution logic.
      */
     @Transactional(isolation = Isolation.SERIALIZABLE, propagation = Propagation.REQUIRED)
-    public void executor(Long jobId, ImplProvider<JobModel> implProvider) {
+    public void executor(Long jobId, JobDelivery delivery, ImplProvider<JobModel> implProvider) {
         // Retrieve the job from the database using the provided jobId
         JobModel job = jpaProxy.getJobById(jobId).orElse(null);
 
@@ -1684,24 +1792,268 @@ public class JobExecutor {
             return;
         }
 
-        // Log the job status as RUNNING
+        // If the message is stale, the job has already been executed or handed back to the scheduler
+        if (isStale(job, delivery)) {
+            return;
+        }
+
+        // Log the job status as RUNNING and start reporting it as alive
         info(jobId, JobStatus.RUNNING);
-        try {
+        jobHeartbeat.register(jobId);
+        Exception permanentFailure = null;
+        boolean isTimedOut = false;
+        JobWatchdog.Watch watch = jobWatchdog.watch(job);
+        try (watch) {
             // Execute the job using the provided implementation
             implProvider.execute(job);// EXECUTION
+            // A run that overran its budget is cancelled even if it got to the end
+            watch.checkpoint();
             // Update the job status to SUCCESS upon successful execution
             job.setStatus(JobStatus.SUCCESS);
             info(job.getId(), JobStatus.SUCCESS);
         } catch (Exception exception) {
-            // Update the job status to FAILED and increment the attempt count upon failure
-            job.setStatus(JobStatus.FAILED);
-            job.setAttempts(job.getAttempts() + 1);
+            if (watch.isExpired()) {
+                // Roll the run back with the transaction, its TIMEOUT is recorded once the rollback has released the job
+                isTimedOut = true;
+                recordTimeoutAfterRollback(job);
+                throw watch.timeout(exception);
+            }
+            // Update the job status to FAILED, a transient failure costs one attempt and a permanent one all of them
+            JobFailure failure = JobFailure.classify(exception);
+            jobProcessor.fail(job, failure);
+            if (JobFailure.PERMANENT == failure) {
+                permanentFailure = exception;
+            }
             // Log the failure details, including the stack trace of the exception
-            error(job.getId(), JobStatus.FAILED.name() + "\n" + ExceptionUtils.getStackTrace(exception));
+            error(job.getId(), JobStatus.FAILED.name() + " (" + failure + ")\n" + ExceptionUtils.getStackTrace(exception));
+        } finally {
+            jobHeartbeat.unregister(jobId);
+            if (!isTimedOut) {
+                // Save the job back to the database with the updated status and attempt count
+                jpaProxy.saveJob(job);
+                // Refresh the next fire time now that the outcome of this run is known
+                jobProcessor.reschedule(List.of(job));
+                // Take a permanently failed job out of the schedule for good
+                if (null != permanentFailure) {
+                    jobProcessor.quarantine(jobId, permanentFailure);
+                }
+                // Send a failed job to its delay queue (or park it) once the failure is committed
+                jobRetryPublisher.publishAfterCommit(job);
+            }
+        }
+    }
+
+
+
+    /**
+     * Executes a long-running job in chunks using the provided chunk provider. Each chunk runs and commits in
+     * its own transaction together with a checkpoint past it, which bounds the size of the transactions and
+     * the time their locks are held. The job starts from the checkpoint left by a failed run, so a retry only
+     * redoes the chunk that failed. The checkpoint is cleared once the job has run to completion.
+     *
+     * @param jobId The ID of the job to be executed.
+     * @param delivery The attempt the message was published for and whether it is a delayed retry.
+     * @param chunkProvider The chunk provider that defines the job execution logic.
+     */
+    public void chunkedExecutor(Long jobId, JobDelivery delivery, ChunkProvider chunkProvider) {
+        JobModel job = jpaProxy.getJobById(jobId).orElse(null);
+
+        if (null ==  job) {
+            error(jobId, "Job is missing while executing.");
+            return;
+        }
+
+        if (isStale(job, delivery)) {
+            return;
+        }
+
+        String cursor = jpaProxy.getJobCheckpoint(jobId);
+        if (null == cursor) {
+            info(jobId, JobStatus.RUNNING);
+        } else {
+            info(jobId, "Resuming after " + cursor);
+        }
+        jobHeartbeat.register(jobId);
+        Exception permanentFailure = null;
+        try {
+            int chunkSize = schedulerConfigProperties.getJobChunkSize();
+            String committed;
+            while (null != (committed = jobChunkRunner.runChunk(job, cursor, chunkSize, chunkProvider))) {
+                cursor = committed;
+            }
+            jpaProxy.saveJobCheckpoint(jobId, null);
+            job.setStatus(JobStatus.SUCCESS);
+            info(job.getId(), JobStatus.SUCCESS);
+        } catch (Exception exception) {
+            // The checkpoint of the last committed chunk is kept for the retry
+            JobFailure failure = JobFailure.classify(exception);
+            jobProcessor.fail(job, failure);
+            if (JobFailure.PERMANENT == failure) {
+                permanentFailure = exception;
+            }
+            error(job.getId(), JobStatus.FAILED.name() + " (" + failure + ") after " + cursor + "\n" + ExceptionUtils.getStackTrace(exception));
         } finally {
-            // Save the job back to the database with the updated status and attempt count
+            jobHeartbeat.unregister(jobId);
             jpaProxy.saveJob(job);
+            jobProcessor.reschedule(List.of(job));
+            if (null != permanentFailure) {
+                jobProcessor.quarantine(jobId, permanentFailure);
+            }
+            jobRetryPublisher.publishAfterCommit(job);
+        }
+    }
+
+
+
+    /**
+     * Executes a batch of jobs using the provided implementation provider. The jobs are loaded with a single
+     * query and executed one after another, the work of each in a transaction of its own, so each ends as SUCCESS
+     * or FAILED on its own and a failed job rolls back its own writes and none of the others. The outcomes of the
+     * whole batch are then saved together and their next fire times recomputed in one pass (see {@link JobBatchRunner}).
+     * Missing jobs and stale messages are skipped, as in {@link #executor(Long, JobDelivery, ImplProvider)}.
+     * The work of a job commits before its outcome does. If the outcomes cannot be saved together they are saved
+     * one by one, and a job whose outcome still cannot be saved fails the delivery and runs again when it is
+     * redelivered, so the work of batched jobs has to be safe to repeat.
+     *
+     * @param messages The messages carrying the IDs of the jobs to be executed, with the attempt in their headers.
+     * @param implProvider The implementation provider that defines the job execution logic.
+     */
+    public void batchExecutor(List<Message<Long>> messages, ImplProvider<JobModel> implProvider) {
+        // A redelivered ID is only executed once
+        Map<Long, JobDelivery> deliveries = new LinkedHashMap<>();
+        messages.forEach(message -> deliveries.put(message.getPayload(), JobDelivery.of(message.getHeaders())));
+
+        // Retrieve all the jobs of the batch at once
+        Map<Long, JobModel> jobs = jpaProxy.getJobsByIds(deliveries.keySet())
+                .stream()
+                .collect(Collectors.toMap(JobModel::getId, job -> job));
+
+        deliveries.keySet()
+                .stream()
+                .filter(jobId -> !jobs.containsKey(jobId))
+                .forEach(jobId -> error(jobId, "Job is missing while executing."));
+
+        // Leave out the jobs whose messages are stale
+        List<JobModel> runnableJobs = deliveries.keySet()
+                .stream()
+                .map(jobs::get)
+                .filter(Objects::nonNull)
+                .filter(job -> !isStale(job, deliveries.get(job.getId())))
+                .toList();
+
+        if (runnableJobs.isEmpty()) {
+            return;
+        }
+
+        List<Long> runnableJobIds = runnableJobs.stream().map(JobModel::getId).toList();
+        jobHeartbeat.register(runnableJobIds);
+        Map<Long, Exception> failures = new HashMap<>();
+        try {
+            for (JobModel job : runnableJobs) {
+                info(job.getId(), JobStatus.RUNNING);
+                try {
+                    jobBatchRunner.runJob(job, implProvider);// EXECUTION
+                    info(job.getId(), JobStatus.SUCCESS);
+                } catch (Exception exception) {
+                    // Only the writes of this job were rolled back, its outcome is saved with the others
+                    failures.put(job.getId(), exception);
+                    error(job.getId(), JobStatus.FAILED.name() + " (" + JobFailure.classify(exception) + ")\n" + ExceptionUtils.getStackTrace(exception));
+                }
+            }
+        } finally {
+            jobHeartbeat.unregister(runnableJobIds);
+        }
+
+        try {
+            jobBatchRunner.saveOutcomes(runnableJobs, failures);
+            return;
+        } catch (RuntimeException exception) {
+            log.error("Failed to save the outcomes of a batch of {} jobs, saving them one by one.", runnableJobs.size(), exception);
+        }
+
+        RuntimeException batchFailure = null;
+        for (JobModel job : runnableJobs) {
+            try {
+                jobBatchRunner.saveOutcomes(List.of(job), failures);
+            } catch (RuntimeException exception) {
+                error(job.getId(), "Failed to save the outcome of the job\n" + ExceptionUtils.getStackTrace(exception));
+                if (null == batchFailure) {
+                    batchFailure = exception;
+                } else {
+                    batchFailure.addSuppressed(exception);
+                }
+            }
+        }
+
+        if (null != batchFailure) {
+            throw batchFailure;
+        }
+    }
+
+
+
+    /**
+     * Records the TIMEOUT of a run once the transaction it was cancelled in has rolled back.
+     * The rollback leaves the job as it was claimed (or FAILED again, for a delayed retry that claimed it in the
+     * same transaction), so the outcome is written in a new transaction.
+     *
+     * @param job The job whose run timed out.
+     */
+    private void recordTimeoutAfterRollback(JobModel job) {
+        Long jobId = job.getId();
+        int attempts = job.getAttempts();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (STATUS_ROLLED_BACK != status) {
+                    return;
+                }
+                try {
+                    jobTimeoutRecorder.record(jobId, attempts);
+                } catch (Exception exception) {
+                    // The job stays RUNNING without a heartbeat, so the reaper fails it instead.
+                    error(jobId, "Failed to record TIMEOUT\n" + ExceptionUtils.getStackTrace(exception));
+                }
+            }
+        });
+    }
+
+
+
+    /**
+     * Checks if a message no longer matches the claim of its job, so executing it would run the job twice.
+     * That is the case when the job is no longer RUNNING, i.e. the message is a redelivery of a run that has
+     * already finished or the job was reaped, when the message was published for an earlier attempt, or when the
+     * reaper has dropped the claim it was published for because it was not picked up in time.
+     * A delayed retry has no claim yet, it claims the job itself if the job is still FAILED on its attempt.
+     *
+     * @param job The job the message refers to.
+     * @param delivery The attempt the message was published for and whether it is a delayed retry.
+     * @return true if the message must not be executed, false otherwise.
+     */
+    private boolean isStale(JobModel job, JobDelivery delivery) {
+        Integer attempt = delivery.attempt();
+        if (delivery.retry()) {
+            if (JobStatus.FAILED.equals(job.getStatus()) && Objects.equals(attempt, job.getAttempts()) && jobProcessor.claimRetry(job)) {
+                info(job.getId(), "Retrying after attempt " + attempt);
+                return false;
+            }
+            error(job.getId(), "Retry of attempt " + attempt + " is stale, the job is " + job.getStatus() + " on attempt " + job.getAttempts() + ", skipping execution.");
+            return true;
+        }
+        if (!JobStatus.RUNNING.equals(job.getStatus())) {
+            error(job.getId(), "Job is " + job.getStatus() + " and no longer claimed, skipping execution.");
+            return true;
+        }
+        if (null != attempt && !attempt.equals(job.getAttempts())) {
+            error(job.getId(), "Message of attempt " + attempt + " is stale, the job is on attempt " + job.getAttempts() + ", skipping execution.");
+            return true;
+        }
+        if (null != delivery.claimToken() && !delivery.claimToken().equals(jpaProxy.getJobClaimToken(job.getId()))) {
+            error(job.getId(), "Message of a dropped claim is stale, skipping execution.");
+            return true;
         }
+        return false;
     }
 
 
@@ -1781,9 +2133,9 @@ public class JobExecutor {
         }
     }
 
-    public static LocalDate getCurrentUtcDate() {
+    public LocalDate getCurrentUtcDate() {
         // Get the current date-time in UTC
-        ZonedDateTime utcDateTime = ZonedDateTime.now(ZoneId.of("UTC"));
+        ZonedDateTime utcDateTime = ZonedDateTime.now(clock.withZone(ZoneOffset.UTC));
         // Extract the LocalDate from the ZonedDateTime
         return utcDateTime.toLocalDate();
     }
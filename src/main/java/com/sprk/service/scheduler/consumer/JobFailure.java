@@ -0,0 +1,80 @@
+package com.sprk.service.scheduler.consumer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.sprk.commons.exception.InvalidDataException;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+
+
+/**
+ * The kind of failure a job run ended with, which decides whether the job is retried or quarantined.
+ */
+public enum JobFailure {
+
+    /**
+     * The run may succeed when retried, e.g. a lost connection, a lock timeout or a 5xx from another service.
+     */
+    TRANSIENT,
+
+    /**
+     * The run fails the same way every time because of data the job itself owns, e.g. malformed job data or a
+     * row the job refers to that does not exist, so retrying it only reloads the same data to fail again.
+     */
+    PERMANENT,
+
+    /**
+     * The run overran the time budget of its job type and was cancelled, it is retried like a transient failure.
+     */
+    TIMEOUT;
+
+
+
+    private static final List<Class<? extends Throwable>> PERMANENT_CAUSES = List.of(
+            JsonProcessingException.class,
+            InvalidDataException.class,
+            EntityNotFoundException.class
+    );
+
+
+
+    /**
+     * Classifies a failure by walking its cause chain. A cancelled run is a timeout whatever it failed with,
+     * otherwise the first cause that is known to be transient or permanent decides, and anything unknown
+     * is treated as transient so it keeps its retries. Client errors of other services are transient too,
+     * as a 401, 403 or 404 during a deploy says nothing about the job itself.
+     *
+     * @param throwable The exception the run failed with.
+     * @return The kind of failure.
+     */
+    public static JobFailure classify(Throwable throwable) {
+        if (throwable instanceof JobTimeoutException) {
+            return TIMEOUT;
+        }
+        Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable cause = throwable; null != cause && visited.add(cause); cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof ResourceAccessException
+                    || cause instanceof HttpClientErrorException) {
+                return TRANSIENT;
+            }
+            for (Class<? extends Throwable> type : PERMANENT_CAUSES) {
+                if (type.isInstance(cause)) {
+                    return PERMANENT;
+                }
+            }
+        }
+        return TRANSIENT;
+    }
+}
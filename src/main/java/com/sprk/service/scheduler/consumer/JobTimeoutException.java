@@ -0,0 +1,13 @@
+package com.sprk.service.scheduler.consumer;
+
+
+
+/**
+ * Thrown when a job run has overrun the time budget of its job type and was cancelled by the {@link JobWatchdog}.
+ */
+public class JobTimeoutException extends RuntimeException {
+
+    public JobTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
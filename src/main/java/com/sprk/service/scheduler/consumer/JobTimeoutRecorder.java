@@ -0,0 +1,59 @@
+package com.sprk.service.scheduler.consumer;
+
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.commons.entity.mq.tag.JobStatus;
+import com.sprk.service.scheduler.dao.JPAProxy;
+import com.sprk.service.scheduler.service.JobProcessor;
+import com.sprk.service.scheduler.service.JobRetryPublisher;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+
+
+/**
+ * Records the outcome of a run that timed out and was rolled back together with its transaction.
+ * The outcome is written in a transaction of its own once the rollback has released the job.
+ */
+@Component
+@RequiredArgsConstructor
+public class JobTimeoutRecorder {
+
+    private final JPAProxy jpaProxy;
+    private final JobProcessor jobProcessor;
+    private final JobRetryPublisher jobRetryPublisher;
+
+
+
+    /**
+     * Marks the run as FAILED with a {@link JobFailure#TIMEOUT}, which costs one attempt, and reschedules the job.
+     *
+     * @param jobId The ID of the job whose run timed out.
+     * @param attempts The attempts of the job when the run was claimed.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRES_NEW
+    )
+    public void record(Long jobId, int attempts) {
+        JobModel job = jpaProxy.getJobById(jobId).orElse(null);
+        // Only the run that timed out is recorded, never a claim the job got since. A delayed retry claims the
+        // job in the transaction of its run, so the rollback has left that job FAILED on the same attempt.
+        if (null == job
+                || !List.of(JobStatus.RUNNING, JobStatus.FAILED).contains(job.getStatus())
+                || attempts != job.getAttempts()) {
+            return;
+        }
+
+        jobProcessor.fail(job, JobFailure.TIMEOUT);
+        jpaProxy.saveJob(job);
+        jobProcessor.reschedule(List.of(job));
+        jobRetryPublisher.publishAfterCommit(job);
+    }
+}
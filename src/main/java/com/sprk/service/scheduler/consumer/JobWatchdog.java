@@ -0,0 +1,147 @@
+package com.sprk.service.scheduler.consumer;
+
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.commons.entity.mq.tag.JobType;
+import com.sprk.service.scheduler.properties.scheduler.SchedulerConfigProperties;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+
+/**
+ * Enforces the time budget of each job type on the runs in flight.
+ * A run is watched from the thread that executes it. Once its budget has passed, the watch expires and
+ * the thread is interrupted, which cancels blocking waits that honour interrupts. The run itself checks
+ * its watch at safe points and gives up with a {@link JobTimeoutException}, so its transaction rolls back.
+ * A job type with a budget of 0 is not watched. That is the case for the types that send mails: a rollback
+ * cannot take back a mail that has gone out, so their retry would send every mail again, and the failed
+ * recipients the run wrote to the mail outbox would be rolled back with it. Those runs are bounded by the
+ * timeouts of the mail server connection instead.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class JobWatchdog {
+
+    private final SchedulerConfigProperties schedulerConfigProperties;
+    private final Clock clock;
+
+    private final Set<Watch> watches = ConcurrentHashMap.newKeySet();
+
+
+
+    /**
+     * Starts watching a run of the given job on the current thread.
+     *
+     * @param job The job that is about to be executed.
+     * @return The watch, to be closed once the run has finished. It never expires if the job type has no budget.
+     */
+    public Watch watch(JobModel job) {
+        long budget = schedulerConfigProperties.getJobTimeouts().getOrDefault(job.getJobType(), schedulerConfigProperties.getJobTimeout());
+        if (budget <= 0) {
+            return new Watch(job.getId(), job.getJobType(), budget, null, Thread.currentThread());
+        }
+        Watch watch = new Watch(job.getId(), job.getJobType(), budget, Instant.now(clock).plusMillis(budget), Thread.currentThread());
+        watches.add(watch);
+        return watch;
+    }
+
+
+
+    @Scheduled(fixedDelayString = "${app.scheduler.watchdogInterval}")
+    public void expireOverdueRuns() {
+        Instant now = Instant.now(clock);
+        watches.stream()
+                .filter(watch -> now.isAfter(watch.deadline))
+                .forEach(Watch::expire);
+    }
+
+
+
+    /**
+     * The watch over a single run.
+     */
+    public final class Watch implements AutoCloseable {
+
+        private final Long jobId;
+        private final JobType jobType;
+        private final long budget;
+        private final Instant deadline;
+        private final Thread thread;
+
+        private boolean isExpired;
+        private boolean isClosed;
+
+        private Watch(Long jobId, JobType jobType, long budget, Instant deadline, Thread thread) {
+            this.jobId = jobId;
+            this.jobType = jobType;
+            this.budget = budget;
+            this.deadline = deadline;
+            this.thread = thread;
+        }
+
+
+
+        public synchronized boolean isExpired() {
+            return isExpired;
+        }
+
+
+
+        /**
+         * Cancels the run if its budget has passed, to be called between units of work.
+         *
+         * @throws JobTimeoutException If the watch has expired.
+         */
+        public void checkpoint() {
+            if (isExpired()) {
+                throw timeout(null);
+            }
+        }
+
+
+
+        /**
+         * @param cause The exception the run ended with after its watch expired, or null.
+         * @return The exception to cancel the run with.
+         */
+        public JobTimeoutException timeout(Exception cause) {
+            return cause instanceof JobTimeoutException timeout
+                    ? timeout
+                    : new JobTimeoutException("Job (" + jobId + ") exceeded the " + budget + " ms budget of " + jobType + ".", cause);
+        }
+
+
+
+        private synchronized void expire() {
+            // A closed watch no longer owns its thread, which may be running another job by now.
+            if (isClosed || isExpired) {
+                return;
+            }
+            isExpired = true;
+            log.warn("Job ({}) exceeded the {} ms budget of {}, cancelling it.", jobId, budget, jobType);
+            thread.interrupt();
+        }
+
+
+
+        @Override
+        public synchronized void close() {
+            isClosed = true;
+            watches.remove(this);
+            if (isExpired) {
+                // The interrupt was meant for the run, not for the listener container that owns the thread.
+                Thread.interrupted();
+            }
+        }
+    }
+}
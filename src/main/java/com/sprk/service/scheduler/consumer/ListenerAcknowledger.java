@@ -0,0 +1,62 @@
+package com.sprk.service.scheduler.consumer;
+
+import com.rabbitmq.client.Channel;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+
+
+/**
+ * Acknowledges the deliveries of the listeners, which run with manual acknowledgement.
+ * The advice wraps the whole listener call, so a delivery is only acknowledged once the listener has returned
+ * and the job status it wrote has committed. If the listener fails, e.g. because the commit did, the delivery
+ * is requeued once and executed again; the executor skips redeliveries of jobs that have already finished.
+ * A redelivery that fails again is dropped rather than requeued without bound: its job is left RUNNING, which
+ * the reaper fails and hands to the retry publisher once its heartbeat (or, for a run that never started, its
+ * delivery) has timed out, or FAILED for a delayed retry, which the scheduler retries with its backoff once the
+ * retry is overdue.
+ * A delivery that was in flight on a crashed instance is redelivered by the broker once its channel closes.
+ */
+@Component
+public class ListenerAcknowledger {
+
+    /**
+     * Creates the advice that acknowledges the deliveries of a listener's container.
+     *
+     * @return The advice to add to the advice chain, after any advice that may still fail the delivery.
+     */
+    public MethodInterceptor acknowledging() {
+        return invocation -> {
+            Object[] arguments = invocation.getArguments();
+            Channel channel = (Channel) arguments[0];
+            List<Message> messages = messages(arguments[1]);
+
+            Object result;
+            try {
+                result = invocation.proceed();
+            } catch (Throwable throwable) {
+                // Each delivery of a consumer batch is requeued or dropped depending on whether it was redelivered.
+                for (Message message : messages) {
+                    MessageProperties properties = message.getMessageProperties();
+                    channel.basicNack(properties.getDeliveryTag(), false, !Boolean.TRUE.equals(properties.isRedelivered()));
+                }
+                throw throwable;
+            }
+            // A consumer batch is acknowledged at once, up to and including its last delivery.
+            long deliveryTag = messages.get(messages.size() - 1).getMessageProperties().getDeliveryTag();
+            channel.basicAck(deliveryTag, messages.size() > 1);
+            return result;
+        };
+    }
+
+
+
+    private static List<Message> messages(Object data) {
+        return data instanceof List<?> messages ? messages.stream().map(Message.class::cast).toList() : List.of((Message) data);
+    }
+}
@@ -0,0 +1,113 @@
+package com.sprk.service.scheduler.consumer;
+
+import com.sprk.service.scheduler.properties.amqp.AMQPConfigProperties;
+import com.sprk.service.scheduler.properties.amqp.AMQPListener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * Adjusts the number of consumers of every listener between its configured minimum and maximum.
+ * The handlers of each listener are timed, and every interval the consumers needed to drain the queue within
+ * the drain target are derived from the queue depth and the average handler latency. The result becomes the
+ * consumer floor of the container; the container itself still adds consumers up to the maximum while they
+ * stay busy, and removes them again once they idle.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ListenerConcurrencyScaler {
+
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final AmqpAdmin amqpAdmin;
+    private final AMQPConfigProperties amqpConfigProperties;
+
+    private final Map<String, AtomicLong> averageLatencies = new ConcurrentHashMap<>();
+    private final Map<String, Integer> consumerFloors = new ConcurrentHashMap<>();
+
+
+
+    /**
+     * Creates the advice that times the handler of the given listener.
+     *
+     * @param listener The name of the listener, the same as its queue in {@link com.sprk.service.scheduler.properties.amqp.AMQPType}.
+     * @return The advice to add to the advice chain of the listener's container.
+     */
+    public MethodInterceptor timing(String listener) {
+        AtomicLong averageLatency = averageLatencies.computeIfAbsent(listener, name -> new AtomicLong());
+        return invocation -> {
+            long started = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                long latency = System.nanoTime() - started;
+                // Exponential moving average, weighing the latest run by a fifth.
+                averageLatency.updateAndGet(average -> 0L == average ? latency : (average * 4 + latency) / 5);
+            }
+        };
+    }
+
+
+
+    @Scheduled(fixedDelayString = "${app.amqp.scaleInterval}", initialDelay = 30_000)
+    public void scaleListeners() {
+        for (MessageListenerContainer listenerContainer : listenerRegistry.getListenerContainers()) {
+            if (!(listenerContainer instanceof SimpleMessageListenerContainer container) || !container.isRunning()) {
+                continue;
+            }
+
+            try {
+                scale(container);
+            } catch (Exception exception) {
+                log.error("Failed to scale listener {}.", container.getListenerId(), exception);
+            }
+        }
+    }
+
+
+
+    /**
+     * Sets the consumer floor of the given container from the depth of its queue and the latency of its handler.
+     *
+     * @param container The listener container to scale.
+     */
+    private void scale(SimpleMessageListenerContainer container) {
+        String listener = container.getListenerId();
+        QueueInformation queue = amqpAdmin.getQueueInfo(container.getQueueNames()[0]);
+        if (null == queue) {
+            return;
+        }
+
+        AMQPListener tuning = amqpConfigProperties.getListener(listener);
+        long averageLatencyMillis = averageLatencies.getOrDefault(listener, new AtomicLong()).get() / 1_000_000L;
+        // Without a measurement assume a message takes the whole drain target, i.e. one consumer per message.
+        long latencyMillis = 0L < averageLatencyMillis ? averageLatencyMillis : amqpConfigProperties.getDrainTarget();
+        // The latency is measured per delivery, and a batch listener takes up to its batch size of messages per delivery.
+        double deliveries = Math.ceil((double) queue.getMessageCount() / Math.max(1, tuning.getBatchSize()));
+        long needed = (long) Math.ceil(deliveries * latencyMillis / amqpConfigProperties.getDrainTarget());
+        int floor = (int) Math.max(tuning.getMinConsumers(), Math.min(tuning.getMaxConsumers(), needed));
+
+        Integer previous = consumerFloors.put(listener, floor);
+        if (null == previous || previous != floor) {
+            container.setConcurrentConsumers(floor);
+            if (null != previous) {
+                log.info("Listener {} scaled from {} to {} consumers. [depth {}, latency {} ms]", listener, previous, floor, queue.getMessageCount(), averageLatencyMillis);
+            }
+        }
+    }
+}
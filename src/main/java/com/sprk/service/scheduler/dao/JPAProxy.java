@@ -2,29 +2,52 @@ package com.sprk.service.scheduler.dao;
 
 import com.sprk.commons.entity.mq.JobModel;
 import com.sprk.commons.entity.mq.RegistryModel;
+import com.sprk.commons.entity.mq.tag.JobStatus;
 import com.sprk.commons.entity.mq.tag.JobType;
+import com.sprk.commons.entity.mq.tag.ScheduleType;
+import com.sprk.service.scheduler.consumer.JobFailure;
 import com.sprk.service.scheduler.dto.procedure.SPGetAttendanceAllStudentsForBatch;
+import com.sprk.service.scheduler.entity.mq.JobHistoryModel;
+import com.sprk.service.scheduler.entity.mq.JobOutboxModel;
+import com.sprk.service.scheduler.entity.mq.JobStateModel;
+import com.sprk.service.scheduler.entity.mq.MailOutboxModel;
+import com.sprk.service.scheduler.repository.mq.JobHistoryRepository;
+import com.sprk.service.scheduler.repository.mq.JobOutboxRepository;
 import com.sprk.service.scheduler.repository.mq.JobRepository;
+import com.sprk.service.scheduler.repository.mq.JobStateRepository;
+import com.sprk.service.scheduler.repository.mq.MailOutboxRepository;
 import com.sprk.service.scheduler.repository.mq.RegistryRepository;
 import com.sprk.service.scheduler.repository.primary.BookingCertificateStatusMappingRepository;
 import com.sprk.service.scheduler.repository.primary.BookingCourseCertificateStatusMappingRepository;
 import com.sprk.service.scheduler.repository.primary.StudentFinalExamRepository;
+import com.sprk.service.scheduler.tag.MailOutboxStatus;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Component
 @RequiredArgsConstructor
-public class JPAProxy {
+public class JPAProxy implements JobStore {
     private final JobRepository jobRepository;
+    private final JobStateRepository jobStateRepository;
+    private final JobHistoryRepository jobHistoryRepository;
+    private final JobOutboxRepository jobOutboxRepository;
+    private final MailOutboxRepository mailOutboxRepository;
     private final RegistryRepository registryRepository;
     private final StudentFinalExamRepository studentFinalExamRepository;
 
@@ -63,7 +86,37 @@ public class JPAProxy {
     }
 
     @Transactional(
-            isolation = Isolation.SERIALIZABLE,
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<JobModel> getJobsByIds(Collection<Long> jobIds) {
+        return jobRepository.findAllById(jobIds);
+    }
+
+    /**
+     * @return The stored next fire time of each of the given jobs that has a job state, by job ID.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public Map<Long, Instant> getNextFireTimes(Collection<Long> jobIds) {
+        // A job that will never run again has no next fire time, which a Collectors.toMap cannot hold.
+        Map<Long, Instant> nextFireTimes = new HashMap<>();
+        jobStateRepository.findAllById(jobIds).forEach(state -> nextFireTimes.put(state.getJobId(), state.getNextFireAt()));
+        return nextFireTimes;
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<JobModel> getUnindexedJobs(long afterId, int limit) {
+        return jobRepository.findUnindexedJobs(afterId, PageRequest.of(0, limit));
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
             propagation = Propagation.REQUIRED
     )
     public void createJob(JobModel model) {
@@ -71,6 +124,361 @@ public class JPAProxy {
     }
 
 
+//    JOB STATE
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public long getLastIndexedJobId() {
+        return jobStateRepository.findLastIndexedJobId();
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<JobStateModel> getUpcomingJobStates(Instant until, long afterId, int limit) {
+        return jobStateRepository.findUpcomingJobStates(
+                until,
+                List.of(JobStatus.RUNNING, JobStatus.NO_INSTANCE),
+                afterId,
+                PageRequest.of(0, limit)
+        );
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    @Override
+    public void saveJobStates(List<JobStateModel> models) {
+        // Existing states only take the new next fire time and heartbeat, their checkpoint and quarantine are kept
+        Map<Long, JobStateModel> states = jobStateRepository.findAllById(models.stream().map(JobStateModel::getJobId).toList())
+                .stream()
+                .collect(Collectors.toMap(JobStateModel::getJobId, state -> state));
+        jobStateRepository.saveAll(models
+                .stream()
+                .map(model -> {
+                    JobStateModel state = states.get(model.getJobId());
+                    if (null == state) {
+                        return model;
+                    }
+                    state.setNextFireAt(null == state.getQuarantinedAt() ? model.getNextFireAt() : null);
+                    state.setHeartbeatAt(model.getHeartbeatAt());
+                    return state;
+                })
+                .toList());
+    }
+
+    /**
+     * Records the kind of failure the last failed run of a job ended with.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    @Override
+    public void saveJobFailure(Long jobId, JobFailure failure, Instant failedAt) {
+        jobStateRepository.saveFailure(jobId, failure, failedAt);
+    }
+
+    /**
+     * Takes a job out of the schedule for good after a permanent failure and records the cause.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    @Override
+    public void quarantineJob(Long jobId, Instant quarantinedAt, String cause) {
+        jobStateRepository.quarantine(jobId, quarantinedAt, cause);
+    }
+
+    /**
+     * Puts a quarantined job back into the schedule with a fresh set of attempts, due at the given time.
+     *
+     * @return The state of the released job, or empty if the job is not quarantined.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public Optional<JobStateModel> releaseQuarantinedJob(Long jobId, Instant nextFireAt) {
+        if (0 == jobStateRepository.releaseQuarantine(jobId, nextFireAt)) {
+            return Optional.empty();
+        }
+        jobRepository.resetAttempts(List.of(jobId));
+        return jobStateRepository.findById(jobId);
+    }
+
+    /**
+     * Refreshes the heartbeat of the given jobs in its own transaction, so it is visible while the jobs are still executing.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRES_NEW
+    )
+    public void touchJobHeartbeats(Collection<Long> jobIds, Instant now) {
+        jobStateRepository.touchHeartbeats(jobIds, now);
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public String getJobCheckpoint(Long jobId) {
+        return jobStateRepository.findById(jobId).map(JobStateModel::getCheckpoint).orElse(null);
+    }
+
+    /**
+     * Records the cursor of the last chunk of a job, in the transaction of the chunk so both commit together.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public void saveJobCheckpoint(Long jobId, String checkpoint) {
+        jobStateRepository.saveCheckpoint(jobId, checkpoint);
+    }
+
+    /**
+     * Fetches RUNNING jobs whose run has stopped sending heartbeats before the heartbeat cutoff, or whose
+     * claim from before the delivery cutoff has never been picked up by a consumer.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<JobModel> getStuckJobs(Instant heartbeatCutoff, Instant deliveryCutoff, long afterId, int limit) {
+        return jobRepository.findStuckJobs(JobStatus.RUNNING, heartbeatCutoff, deliveryCutoff, afterId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Marks the given stuck jobs as FAILED. A run that started and stopped sending heartbeats counts as an attempt,
+     * a claim whose message was never picked up does not, and is dropped so that message is stale if it ever arrives.
+     * Jobs that finished, sent a heartbeat or started in the meantime are left untouched, so only the jobs reaped
+     * by this call are returned.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<JobModel> reapJobs(Collection<Long> jobIds, Instant heartbeatCutoff, Instant deliveryCutoff) {
+        jobRepository.lockJobs(jobIds);
+        List<Long> stalledJobIds = jobRepository.findStalledJobIds(jobIds, JobStatus.RUNNING, heartbeatCutoff);
+        List<Long> undeliveredJobIds = jobRepository.findUndeliveredJobIds(jobIds, JobStatus.RUNNING, deliveryCutoff);
+        if (!stalledJobIds.isEmpty()) {
+            jobRepository.reapJobs(stalledJobIds, JobStatus.FAILED);
+        }
+        if (!undeliveredJobIds.isEmpty()) {
+            jobRepository.failJobs(undeliveredJobIds, JobStatus.FAILED);
+            jobStateRepository.saveClaimToken(undeliveredJobIds, null);
+        }
+
+        List<Long> reapedJobIds = new ArrayList<>(stalledJobIds);
+        reapedJobIds.addAll(undeliveredJobIds);
+        return reapedJobIds.isEmpty() ? List.of() : jobRepository.findAllById(reapedJobIds);
+    }
+
+    /**
+     * Reads the token of the claim that last set a job RUNNING.
+     * The read runs in a transaction of its own, so a serializable run reading it takes no lock that would hold back
+     * the heartbeats of the job.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRES_NEW
+    )
+    public String getJobClaimToken(Long jobId) {
+        return jobStateRepository.findById(jobId).map(JobStateModel::getClaimToken).orElse(null);
+    }
+
+
+//    HISTORY
+    /**
+     * Fetches finished ONCE jobs (and jobs of types that are never queued) last touched before the cutoff.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<JobModel> getArchivableJobs(int retryLimit, Collection<JobType> neverQueuedTypes, Instant cutoff, long afterId, int limit) {
+        return jobRepository.findArchivableJobs(
+                ScheduleType.ONCE,
+                JobStatus.SUCCESS,
+                JobStatus.FAILED,
+                retryLimit,
+                neverQueuedTypes,
+                cutoff,
+                afterId,
+                PageRequest.of(0, limit)
+        );
+    }
+
+    /**
+     * Moves the given jobs into the history table and removes them, with their state, from the hot tables.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public void archiveJobs(List<JobModel> models, Instant archivedAt) {
+        List<Long> jobIds = models.stream().map(JobModel::getId).toList();
+        jobHistoryRepository.insertAll(models.stream().map(model -> JobHistoryModel.of(model, archivedAt)).toList());
+        jobStateRepository.deleteJobStates(jobIds);
+        jobRepository.deleteJobs(jobIds);
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<String> getJobHistoryPartitionNames() {
+        return jobHistoryRepository.findPartitionNames();
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public void partitionJobHistory(YearMonth firstMonth) {
+        jobHistoryRepository.partitionByMonth(firstMonth);
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public void addJobHistoryPartition(YearMonth month) {
+        jobHistoryRepository.addMonthPartition(month);
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public void dropJobHistoryPartition(YearMonth month) {
+        jobHistoryRepository.dropMonthPartition(month);
+    }
+
+
+//    OUTBOX
+    /**
+     * Adds a job to the outbox, only as part of the transaction of the handler that derived it.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.MANDATORY
+    )
+    public JobOutboxModel addToOutbox(JobOutboxModel model) {
+        return jobOutboxRepository.save(model);
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<JobOutboxModel> getOutboxEntries(long afterId, int limit) {
+        return jobOutboxRepository.findOutboxEntries(afterId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Removes an entry from the outbox on behalf of the caller's transaction.
+     * Of concurrent relays only one removes the entry, the others wait for it and find nothing to remove.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.MANDATORY
+    )
+    public boolean claimOutboxEntry(Long id) {
+        return 0 < jobOutboxRepository.deleteOutboxEntry(id);
+    }
+
+
+
+//    MAIL OUTBOX
+    /**
+     * Adds mails to the mail outbox as part of the transaction of the job that tried to send them.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<MailOutboxModel> addToMailOutbox(List<MailOutboxModel> models) {
+        return mailOutboxRepository.saveAll(models);
+    }
+
+    /**
+     * Fetches the jobs that kept failed mails before the mail outbox, one chunk at a time.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<JobModel> getFailedTemplatesJobs(long afterId, int limit) {
+        return jobRepository.findJobsByType(JobType.FAILED_TEMPLATES, afterId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Adds the mails of jobs that kept failed mails before the mail outbox to the outbox, and archives the jobs
+     * in the same transaction, so a job is never archived with mails that were not moved.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public void moveToMailOutbox(List<JobModel> models, List<MailOutboxModel> mails, Instant archivedAt) {
+        mailOutboxRepository.saveAll(mails);
+        archiveJobs(models, archivedAt);
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<MailOutboxModel> getDueMails(Instant now, int limit) {
+        return mailOutboxRepository.findDueMails(now, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Takes a lease on a due mail and counts the attempt. Of concurrent dispatchers only one gets the lease.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public boolean claimMail(Long id, Instant now, Instant leaseUntil) {
+        return 0 < mailOutboxRepository.claimMail(id, now, leaseUntil);
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public void markMailSent(Long id, Instant sentAt) {
+        mailOutboxRepository.markSent(id, sentAt);
+    }
+
+    /**
+     * Records a failed attempt, either PENDING with the time of the next attempt or FAILED for good.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public void markMailFailed(Long id, MailOutboxStatus status, Instant nextAttemptAt, String error) {
+        mailOutboxRepository.markFailed(id, status, nextAttemptAt, error);
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public int purgeSentMails(Instant before) {
+        return mailOutboxRepository.deleteSentMails(before);
+    }
+
+
 //    REGISTRY
     @Transactional(
             isolation = Isolation.READ_COMMITTED,
@@ -98,29 +506,114 @@ public class JPAProxy {
     }
 
     @Transactional(
-            isolation = Isolation.SERIALIZABLE,
+            isolation = Isolation.READ_COMMITTED,
             propagation = Propagation.REQUIRED
     )
-    public void saveRegistry(RegistryModel model) {
-        registryRepository.save(model);
+    public boolean renewLease(String macAddress, String ipAddress, Instant now) {
+        return 0 < registryRepository.renewLease(macAddress, ipAddress, now);
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public List<String> getLiveMacAddresses(Instant cutoff) {
+        return registryRepository.findLiveMacAddresses(cutoff);
     }
 
     @Transactional(
             isolation = Isolation.SERIALIZABLE,
             propagation = Propagation.REQUIRED
     )
+    public RegistryModel saveRegistry(RegistryModel model) {
+        return registryRepository.save(model);
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
     public void saveJob(JobModel model) {
         jobRepository.save(model);
     }
 
+    /**
+     * Saves the given jobs together, their updates are sent to the database in JDBC batches.
+     */
     @Transactional(
-            isolation = Isolation.SERIALIZABLE,
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public void saveJobs(Collection<JobModel> models) {
+        jobRepository.saveAll(models);
+    }
+
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
             propagation = Propagation.REQUIRED
     )
     public JobModel saveJobAndFlush(JobModel model) {
         return jobRepository.saveAndFlush(model);
     }
 
+    /**
+     * Atomically marks the given jobs as RUNNING on behalf of this instance.
+     * Jobs that another instance has already claimed, or that are no longer due or quarantined by now, are left
+     * untouched, so only the IDs claimed by this call are returned. The claimed jobs are stamped with the unique
+     * claim token and read back by it.
+     * Claimed jobs that start a new occurrence of their calendar get their attempts and chunk checkpoint
+     * reset in the same transaction.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    @Override
+    public List<Long> claimJobs(Collection<Long> jobIds, Collection<Long> attemptResetJobIds, Instant now, Instant claimedAt, String claimedBy, String claimToken) {
+        // While the jobs are locked no run can finish and no other claim can set them RUNNING, so the claimable ones
+        // stay claimable. A job that finished since its due check was read has been rescheduled and is no longer due.
+        jobRepository.lockJobs(jobIds);
+        List<JobStatus> excludedStatuses = List.of(JobStatus.RUNNING, JobStatus.NO_INSTANCE);
+        List<Long> claimableJobIds = jobRepository.findClaimableJobIds(jobIds, excludedStatuses, now);
+        if (claimableJobIds.isEmpty() || 0 == jobRepository.claimJobs(claimableJobIds, JobStatus.RUNNING, excludedStatuses, claimedAt, claimedBy)) {
+            return List.of();
+        }
+        jobStateRepository.saveClaimToken(claimableJobIds, claimToken);
+        List<Long> claimedJobIds = jobRepository.findClaimedJobIds(claimableJobIds, JobStatus.RUNNING, claimToken);
+        List<Long> resetJobIds = claimedJobIds.stream().filter(attemptResetJobIds::contains).toList();
+        if (!resetJobIds.isEmpty()) {
+            jobRepository.resetAttempts(resetJobIds);
+            jobStateRepository.clearCheckpoints(resetJobIds);
+        }
+        return claimedJobIds;
+    }
+
+    /**
+     * Claims a FAILED job for the retry of the given attempt, which only succeeds if nothing else has claimed it since.
+     * The conditional update locks the job like {@link #claimJobs} does. The job state is left alone, as the retry
+     * claims the job in the transaction of its run and would otherwise hold back the heartbeats of the run.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    @Override
+    public boolean claimRetry(Long jobId, int attempts, Instant claimedAt, String claimedBy) {
+        return 0 < jobRepository.claimRetry(jobId, attempts, JobStatus.FAILED, JobStatus.RUNNING, claimedAt, claimedBy);
+    }
+
+    /**
+     * Restores the previous status of a job, provided the claim with the given token still holds it.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    @Override
+    public boolean releaseJob(Long jobId, JobStatus status, Instant lastRanAt, String lastRanBy, String claimToken) {
+        return 0 < jobRepository.releaseJob(jobId, status, lastRanAt, lastRanBy, JobStatus.RUNNING, claimToken);
+    }
+
 
 
     @Transactional(
@@ -0,0 +1,41 @@
+package com.sprk.service.scheduler.dao;
+
+import com.sprk.commons.entity.mq.tag.JobStatus;
+import com.sprk.service.scheduler.consumer.JobFailure;
+import com.sprk.service.scheduler.entity.mq.JobStateModel;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+
+
+/**
+ * The claims and job state writes the {@link com.sprk.service.scheduler.service.JobProcessor} decides with.
+ * The {@link JPAProxy} stores them in the job tables, the benchmarks keep them in memory.
+ */
+public interface JobStore {
+
+    /**
+     * Atomically marks the given jobs as RUNNING, leaving those that are claimed, not due or quarantined by now.
+     *
+     * @return The IDs of the jobs claimed by this call.
+     */
+    List<Long> claimJobs(Collection<Long> jobIds, Collection<Long> attemptResetJobIds, Instant now, Instant claimedAt, String claimedBy, String claimToken);
+
+    /**
+     * Claims a FAILED job for the retry of the given attempt, if nothing else has claimed it since.
+     */
+    boolean claimRetry(Long jobId, int attempts, Instant claimedAt, String claimedBy);
+
+    /**
+     * Restores the previous status of a job, provided the claim with the given token still holds it.
+     */
+    boolean releaseJob(Long jobId, JobStatus status, Instant lastRanAt, String lastRanBy, String claimToken);
+
+    void saveJobStates(List<JobStateModel> models);
+
+    void saveJobFailure(Long jobId, JobFailure failure, Instant failedAt);
+
+    void quarantineJob(Long jobId, Instant quarantinedAt, String cause);
+}
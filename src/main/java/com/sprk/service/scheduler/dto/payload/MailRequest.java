@@ -0,0 +1,23 @@
+package com.sprk.service.scheduler.dto.payload;
+
+import com.sprk.service.scheduler.util.MailTemplate;
+import lombok.*;
+
+import java.util.Map;
+
+
+/**
+ * A mail kept in the jsonData of an EMAIL job before it is rendered: the template and the values of its
+ * placeholders, instead of the full HTML body. The body is rendered when the mail is sent.
+ */
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+public class MailRequest {
+    MailTemplate template;
+    String recipient;
+    Map<String, String> parameters;
+}
@@ -0,0 +1,146 @@
+package com.sprk.service.scheduler.entity.mq;
+
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.commons.entity.mq.tag.JobStatus;
+import com.sprk.commons.entity.mq.tag.JobType;
+import com.sprk.commons.entity.mq.tag.ScheduleType;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+
+
+/**
+ * A finished job moved out of the hot job table.
+ * The table is range partitioned by the month the job was archived in, so the month is part of the key
+ * and old history is removed by dropping whole partitions.
+ */
+@Entity
+@Table(
+        name = "job_history",
+        indexes = @Index(name = "idx_job_history_job_type", columnList = "job_type")
+)
+@IdClass(JobHistoryModel.Key.class)
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class JobHistoryModel {
+
+    @Id
+    @Column(name = "job_id", nullable = false, updatable = false)
+    private Long jobId;
+
+    /**
+     * The month the job was archived in, as yyyyMM. Used as the partitioning key.
+     */
+    @Id
+    @Column(name = "archived_month", nullable = false, updatable = false)
+    private Integer archivedMonth;
+
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "description", columnDefinition = "TEXT")
+    private String description;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "job_type")
+    private JobType jobType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "schedule_type")
+    private ScheduleType scheduleType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private JobStatus status;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "execute_at")
+    private Instant executeAt;
+
+    /**
+     * The days of the week of the calendar, comma separated, or null.
+     */
+    @Column(name = "days")
+    private String days;
+
+    /**
+     * The days of the month of the calendar, comma separated, or null.
+     */
+    @Column(name = "dates")
+    private String dates;
+
+    @Column(name = "last_ran_at")
+    private Instant lastRanAt;
+
+    @Column(name = "last_ran_by")
+    private String lastRanBy;
+
+    @Lob
+    @Column(name = "json_data", columnDefinition = "LONGTEXT")
+    private String jsonData;
+
+    @Column(name = "archived_at", nullable = false)
+    private Instant archivedAt;
+
+
+
+    /**
+     * Copies a job into its history record.
+     *
+     * @param model The job to archive.
+     * @param archivedAt The time of archival.
+     * @return The history record of the job.
+     */
+    public static JobHistoryModel of(JobModel model, Instant archivedAt) {
+        return JobHistoryModel.builder()
+                .jobId(model.getId())
+                .archivedMonth(toMonthKey(YearMonth.from(archivedAt.atZone(ZoneOffset.UTC))))
+                .name(model.getName())
+                .description(model.getDescription())
+                .jobType(model.getJobType())
+                .scheduleType(model.getScheduleType())
+                .status(model.getStatus())
+                .attempts(model.getAttempts())
+                .executeAt(model.getExecuteAt())
+                .days(JobOutboxModel.join(model.getDays()))
+                .dates(JobOutboxModel.join(model.getDates()))
+                .lastRanAt(model.getLastRanAt())
+                .lastRanBy(model.getLastRanBy())
+                .jsonData(model.getJsonData())
+                .archivedAt(archivedAt)
+                .build();
+    }
+
+
+
+    /**
+     * @param month The month.
+     * @return The month as yyyyMM, the value stored in the partitioning key.
+     */
+    public static int toMonthKey(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+
+
+
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private Long jobId;
+        private Integer archivedMonth;
+    }
+}
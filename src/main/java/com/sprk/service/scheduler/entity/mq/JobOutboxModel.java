@@ -0,0 +1,86 @@
+package com.sprk.service.scheduler.entity.mq;
+
+import com.sprk.commons.entity.mq.tag.JobType;
+import com.sprk.commons.entity.mq.tag.ScheduleType;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+
+
+/**
+ * A job created by a handler that is still to be added to the job table.
+ * Handlers write it in their own transaction, so it only exists if the work that derived it committed,
+ * and {@link com.sprk.service.scheduler.service.JobOutbox} turns it into a job right after the commit.
+ */
+@Entity
+@Table(name = "job_outbox")
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class JobOutboxModel {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false, updatable = false)
+    private Long id;
+
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "description", columnDefinition = "TEXT")
+    private String description;
+
+    @Lob
+    @Column(name = "json_data", columnDefinition = "LONGTEXT")
+    private String jsonData;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "job_type", nullable = false)
+    private JobType jobType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "schedule_type", nullable = false)
+    private ScheduleType scheduleType;
+
+    @Column(name = "execute_at", nullable = false)
+    private Instant executeAt;
+
+    /**
+     * The days of the week of the calendar, comma separated, or null.
+     */
+    @Column(name = "days")
+    private String days;
+
+    /**
+     * The days of the month of the calendar, comma separated, or null.
+     */
+    @Column(name = "dates")
+    private String dates;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+
+
+    public List<DayOfWeek> getDayList() {
+        return null == days ? null : Arrays.stream(days.split(",")).map(DayOfWeek::valueOf).toList();
+    }
+
+    public List<Integer> getDateList() {
+        return null == dates ? null : Arrays.stream(dates.split(",")).map(Integer::valueOf).toList();
+    }
+
+    public static String join(Collection<?> values) {
+        return null == values || values.isEmpty() ? null : values.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+}
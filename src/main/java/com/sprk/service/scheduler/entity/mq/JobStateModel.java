@@ -0,0 +1,80 @@
+package com.sprk.service.scheduler.entity.mq;
+
+import com.sprk.service.scheduler.consumer.JobFailure;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+
+
+/**
+ * Scheduler-owned state kept alongside a {@code JobModel}.
+ * The shared job entity is defined in sprk-core, so everything the scheduler needs to look up jobs
+ * by time (instead of scanning the whole job table) is stored here, keyed by the job id.
+ */
+@Entity
+@Table(
+        name = "job_state",
+        indexes = @Index(name = "idx_job_state_next_fire_at", columnList = "next_fire_at")
+)
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class JobStateModel {
+
+    @Id
+    @Column(name = "job_id", nullable = false, updatable = false)
+    private Long jobId;
+
+    /**
+     * The earliest instant at which the job may be picked up again, or null if it will never run again.
+     */
+    @Column(name = "next_fire_at")
+    private Instant nextFireAt;
+
+    /**
+     * The last time a worker reported that it is still executing the job, or null if it is not being executed.
+     */
+    @Column(name = "heartbeat_at")
+    private Instant heartbeatAt;
+
+    /**
+     * The cursor after the last committed chunk of a chunked job, or null if the job has no chunk in progress.
+     * A failed run keeps it, so the retry resumes after the chunk it points at.
+     */
+    @Column(name = "checkpoint")
+    private String checkpoint;
+
+    /**
+     * The unique token of the claim that last set the job RUNNING, it identifies the claim when it is released.
+     */
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    /**
+     * The time the job was quarantined after a permanent failure, or null if it is not quarantined.
+     * A quarantined job keeps no next fire time, whatever its calendar says.
+     */
+    @Column(name = "quarantined_at")
+    private Instant quarantinedAt;
+
+    /**
+     * The root cause of the failure the job was quarantined for.
+     */
+    @Column(name = "quarantine_cause", length = 1000)
+    private String quarantineCause;
+
+    /**
+     * The kind of failure the last failed run ended with, e.g. TIMEOUT, or null if no run has failed.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_failure")
+    private JobFailure lastFailure;
+
+    @Column(name = "last_failed_at")
+    private Instant lastFailedAt;
+}
@@ -0,0 +1,86 @@
+package com.sprk.service.scheduler.entity.mq;
+
+import com.sprk.service.scheduler.tag.MailOutboxStatus;
+import com.sprk.service.scheduler.util.MailTemplate;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+
+
+/**
+ * A single mail that a job could not deliver, kept until {@link com.sprk.service.scheduler.service.MailOutbox}
+ * delivers it or gives up on it. Every row is one recipient, so a retry resends only the mails that failed.
+ */
+@Entity
+@Table(
+        name = "mail_outbox",
+        indexes = {
+                @Index(name = "idx_mail_outbox_status_next_attempt_at", columnList = "status, next_attempt_at"),
+                @Index(name = "idx_mail_outbox_status_sent_at", columnList = "status, sent_at")
+        }
+)
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MailOutboxModel {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false, updatable = false)
+    private Long id;
+
+    /**
+     * The job that tried to send the mail first.
+     */
+    @Column(name = "job_id")
+    private Long jobId;
+
+    @Column(name = "recipient")
+    private String recipient;
+
+    /**
+     * The template of a mail that is rendered when it is sent, or null if the payload is an already rendered mail.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "template")
+    private MailTemplate template;
+
+    /**
+     * The mail as JSON, a {@link com.sprk.service.scheduler.dto.payload.MailRequest} if it has a template and an
+     * {@link com.sprk.commons.dto.amqp.EmailTemplateDTO} otherwise.
+     */
+    @Lob
+    @Column(name = "payload", columnDefinition = "LONGTEXT", nullable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private MailOutboxStatus status;
+
+    /**
+     * The number of times the mail has been tried, including the send of the job.
+     */
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    /**
+     * The earliest instant the mail is tried again, or null once it is no longer PENDING.
+     * While a dispatcher sends the mail it holds a lease on it by pushing this forward.
+     */
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "sent_at")
+    private Instant sentAt;
+}
@@ -5,6 +5,9 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 @ConfigurationProperties(prefix = "app.amqp")
 @Getter
@@ -15,4 +18,19 @@ public class AMQPConfigProperties {
     String exchange;
     long retryDelay;
     int retryLimit;
+    boolean delayedRetry = true;
+    double retryJitter = 0.2;
+    long retryFallback = 600_000;
+    long confirmTimeout;
+    long scaleInterval = 10_000;
+    long drainTarget = 30_000;
+    Map<String, AMQPListener> listener = new HashMap<>();
+
+    /**
+     * @param name The name of the queue, as used in {@link AMQPType}.
+     * @return The listener tuning of the queue, or the defaults if it is not configured.
+     */
+    public AMQPListener getListener(String name) {
+        return listener.getOrDefault(name, new AMQPListener());
+    }
 }
@@ -0,0 +1,15 @@
+package com.sprk.service.scheduler.properties.amqp;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class AMQPListener {
+
+    int minConsumers = 1;
+    int maxConsumers = 1;
+    int prefetch = 1;
+    int batchSize = 1;
+
+}
@@ -0,0 +1,15 @@
+package com.sprk.service.scheduler.properties.async;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.async")
+@Getter
+@Setter
+public class AsyncConfigProperties {
+    boolean virtualThreads = false;
+    int maxConcurrency = 200;
+}
@@ -11,4 +11,21 @@ import org.springframework.context.annotation.Configuration;
 @Setter
 public class EMailerConfigProperties {
     String defaultEmail;
+    int batchSize = 50;
+    int poolSize = 8;
+    int maxMessagesPerConnection = 100;
+    long poolIdleTimeout = 30_000;
+    long poolBorrowTimeout = 30_000;
+    long outboxInterval = 30_000;
+    int outboxMaxAttempts = 6;
+    long outboxRetryDelay = 60_000;
+    long outboxMaxRetryDelay = 3_600_000;
+    long outboxLease = 300_000;
+    long outboxRetention = 604_800_000;
+    /**
+     * The number of mails the outbox may resend per quota window, 0 for no limit. It only covers the retries of
+     * the outbox, the first send of a job is bounded by the pool size and the batch size instead.
+     */
+    int quotaLimit = 0;
+    long quotaWindow = 60_000;
 }
@@ -0,0 +1,38 @@
+package com.sprk.service.scheduler.properties.scheduler;
+
+import com.sprk.commons.entity.mq.tag.JobType;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.scheduler")
+@Getter
+@Setter
+public class SchedulerConfigProperties {
+    int batchSize = 200;
+    long discoveryWindow = 500;
+    long reconcileInterval = 60_000;
+    long lookAhead = 150_000;
+    long heartbeatInterval = 10_000;
+    long leaseDuration = 30_000;
+    int virtualNodes = 64;
+    long jobHeartbeatTimeout = 120_000;
+    long jobDeliveryTimeout = 3_600_000;
+    long reapInterval = 60_000;
+    long archiveInterval = 3_600_000;
+    long archiveAfter = 2_592_000_000L;
+    int archiveChunkSize = 500;
+    int historyRetentionMonths = 12;
+    int jobChunkSize = 200;
+    long outboxRelayInterval = 10_000;
+    long jobTimeout = 300_000;
+    Map<JobType, Long> jobTimeouts = new EnumMap<>(JobType.class);
+    long watchdogInterval = 1_000;
+    int httpConnectTimeout = 10_000;
+    int httpReadTimeout = 60_000;
+}
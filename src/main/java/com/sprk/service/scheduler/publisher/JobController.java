@@ -13,6 +13,7 @@ import lombok.RequiredArgsConstructor;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -67,4 +68,42 @@ public class JobController {
 
     }
 
+    /**
+     * Release Quarantined Job.
+     * This method puts a job that was quarantined after a permanent failure back into the schedule.
+     * @param jobId The ID of the quarantined job.
+     * @return ResponseEntity containing the APIResponse confirming the release.
+     */
+    @PostMapping("/job/{jobId}/release")
+    @Operation(
+            summary = "Release Quarantined Job",
+            description = "Puts a job that was quarantined after a permanent failure back into the schedule.\n\n" +
+                    "Access Control:\n" +
+                    "This endpoint is accessible to all users with appropriate permissions.\n\n" +
+                    "Endpoint Workflow:\n" +
+                    "1. Clears the quarantine of the job and gives it a fresh set of attempts.\n" +
+                    "2. Makes the job due straight away, after which it follows its calendar again.\n" +
+                    "3. Returns a ResponseEntity with the APIResponse confirming the release.\n",
+            tags = {"POST"}
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Job released successfully.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = APIResponse.class))
+            )
+    })
+    public ResponseEntity<?> releaseQuarantinedJob(
+            @Parameter(
+                    name = "jobId",
+                    description = "The ID of the quarantined job.",
+                    required = true
+            )
+            @PathVariable Long jobId
+    ) {
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(schedulerService.releaseQuarantinedJob(jobId));
+    }
+
 }
@@ -0,0 +1,18 @@
+package com.sprk.service.scheduler.repository.mq;
+
+import com.sprk.service.scheduler.entity.mq.JobHistoryModel;
+
+import java.util.Collection;
+
+
+
+/**
+ * Bulk insertion of history records.
+ */
+public interface JobHistoryArchiveRepository {
+    /**
+     * Inserts new history records in JDBC batches. Unlike {@code saveAll}, which merges records whose key is
+     * assigned by the caller and so selects every row first, the records are persisted straight away.
+     */
+    void insertAll(Collection<JobHistoryModel> models);
+}
@@ -0,0 +1,28 @@
+package com.sprk.service.scheduler.repository.mq;
+
+import com.sprk.service.scheduler.entity.mq.JobHistoryModel;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.data.jpa.repository.JpaContext;
+
+import java.util.Collection;
+
+
+
+@RequiredArgsConstructor
+class JobHistoryArchiveRepositoryImpl implements JobHistoryArchiveRepository {
+
+    private final JpaContext jpaContext;
+
+
+
+    @Override
+    public void insertAll(Collection<JobHistoryModel> models) {
+        EntityManager entityManager = jpaContext.getEntityManagerByManagedType(JobHistoryModel.class);
+        models.forEach(entityManager::persist);
+        // The inserts are sent in batches of hibernate.jdbc.batch_size before the jobs are deleted.
+        entityManager.flush();
+    }
+}
@@ -0,0 +1,32 @@
+package com.sprk.service.scheduler.repository.mq;
+
+import java.time.YearMonth;
+
+
+
+/**
+ * Partition maintenance of the job history table, which is range partitioned by archival month.
+ * Every month has a partition named {@code p<yyyyMM>}, followed by a catch-all {@value #OVERFLOW_PARTITION}.
+ */
+public interface JobHistoryPartitionRepository {
+    String OVERFLOW_PARTITION = "p_overflow";
+
+    /**
+     * Converts the (unpartitioned) table into one partitioned by month, starting with the given month.
+     */
+    void partitionByMonth(YearMonth firstMonth);
+
+    /**
+     * Splits the given month off the overflow partition.
+     */
+    void addMonthPartition(YearMonth month);
+
+    /**
+     * Drops the partition of the given month together with its rows.
+     */
+    void dropMonthPartition(YearMonth month);
+
+    static String partitionName(YearMonth month) {
+        return String.format("p%04d%02d", month.getYear(), month.getMonthValue());
+    }
+}
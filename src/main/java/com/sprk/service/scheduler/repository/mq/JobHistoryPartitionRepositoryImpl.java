@@ -0,0 +1,52 @@
+package com.sprk.service.scheduler.repository.mq;
+
+import com.sprk.service.scheduler.entity.mq.JobHistoryModel;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.data.jpa.repository.JpaContext;
+
+import java.time.YearMonth;
+
+
+
+@RequiredArgsConstructor
+class JobHistoryPartitionRepositoryImpl implements JobHistoryPartitionRepository {
+
+    private final JpaContext jpaContext;
+
+
+
+    @Override
+    public void partitionByMonth(YearMonth firstMonth) {
+        execute("ALTER TABLE job_history PARTITION BY RANGE (archived_month) (" +
+                monthPartition(firstMonth) + ", " +
+                "PARTITION " + OVERFLOW_PARTITION + " VALUES LESS THAN MAXVALUE)");
+    }
+
+    @Override
+    public void addMonthPartition(YearMonth month) {
+        execute("ALTER TABLE job_history REORGANIZE PARTITION " + OVERFLOW_PARTITION + " INTO (" +
+                monthPartition(month) + ", " +
+                "PARTITION " + OVERFLOW_PARTITION + " VALUES LESS THAN MAXVALUE)");
+    }
+
+    @Override
+    public void dropMonthPartition(YearMonth month) {
+        execute("ALTER TABLE job_history DROP PARTITION " + JobHistoryPartitionRepository.partitionName(month));
+    }
+
+
+
+    private static String monthPartition(YearMonth month) {
+        return "PARTITION " + JobHistoryPartitionRepository.partitionName(month) +
+                " VALUES LESS THAN (" + JobHistoryModel.toMonthKey(month.plusMonths(1)) + ")";
+    }
+
+    private void execute(String statement) {
+        // The statement is built from month numbers only, so it is safe to run as is.
+        EntityManager entityManager = jpaContext.getEntityManagerByManagedType(JobHistoryModel.class);
+        entityManager.createNativeQuery(statement).executeUpdate();
+    }
+}
@@ -0,0 +1,20 @@
+package com.sprk.service.scheduler.repository.mq;
+
+import com.sprk.service.scheduler.entity.mq.JobHistoryModel;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+
+
+public interface JobHistoryRepository extends JpaRepository<JobHistoryModel, JobHistoryModel.Key>, JobHistoryPartitionRepository, JobHistoryArchiveRepository {
+    @Query(value = "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() " +
+            "AND TABLE_NAME = 'job_history' " +
+            "AND PARTITION_NAME IS NOT NULL " +
+            "ORDER BY PARTITION_ORDINAL_POSITION",
+            nativeQuery = true)
+    List<String> findPartitionNames();
+}
@@ -0,0 +1,27 @@
+package com.sprk.service.scheduler.repository.mq;
+
+import com.sprk.service.scheduler.entity.mq.JobOutboxModel;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+
+
+public interface JobOutboxRepository extends JpaRepository<JobOutboxModel, Long> {
+    @Query("SELECT o FROM JobOutboxModel o " +
+            "WHERE o.id > :afterId " +
+            "ORDER BY o.id")
+    List<JobOutboxModel> findOutboxEntries(
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
+
+    @Modifying
+    @Query("DELETE FROM JobOutboxModel o WHERE o.id = :id")
+    int deleteOutboxEntry(@Param("id") Long id);
+}
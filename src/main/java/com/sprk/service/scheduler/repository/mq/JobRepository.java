@@ -1,12 +1,191 @@
 package com.sprk.service.scheduler.repository.mq;
 
 import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.commons.entity.mq.tag.JobStatus;
 import com.sprk.commons.entity.mq.tag.JobType;
+import com.sprk.commons.entity.mq.tag.ScheduleType;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 
 
 
 public interface JobRepository extends JpaRepository<JobModel, Long> {
     long countByJobType(JobType jobType);
+
+    @Modifying
+    @Query("UPDATE JobModel j " +
+            "SET j.status = :running, j.lastRanAt = :claimedAt, j.lastRanBy = :claimedBy " +
+            "WHERE j.id IN :jobIds " +
+            "AND j.status NOT IN :excludedStatuses")
+    int claimJobs(
+            @Param("jobIds") Collection<Long> jobIds,
+            @Param("running") JobStatus running,
+            @Param("excludedStatuses") Collection<JobStatus> excludedStatuses,
+            @Param("claimedAt") Instant claimedAt,
+            @Param("claimedBy") String claimedBy
+    );
+
+    /**
+     * Locks the given jobs until the end of the transaction without changing them.
+     * Every claim takes these locks before it sets a job RUNNING, so claims of the same jobs run one after the other.
+     */
+    @Modifying
+    @Query("UPDATE JobModel j SET j.status = j.status WHERE j.id IN :jobIds")
+    int lockJobs(@Param("jobIds") Collection<Long> jobIds);
+
+    @Query("SELECT j.id FROM JobModel j " +
+            "WHERE j.id IN :jobIds " +
+            "AND j.status NOT IN :excludedStatuses " +
+            "AND EXISTS (SELECT s.jobId FROM JobStateModel s " +
+            "WHERE s.jobId = j.id " +
+            "AND s.nextFireAt IS NOT NULL " +
+            "AND s.nextFireAt <= :now " +
+            "AND s.quarantinedAt IS NULL)")
+    List<Long> findClaimableJobIds(
+            @Param("jobIds") Collection<Long> jobIds,
+            @Param("excludedStatuses") Collection<JobStatus> excludedStatuses,
+            @Param("now") Instant now
+    );
+
+    @Query("SELECT j.id FROM JobModel j " +
+            "WHERE j.id IN :jobIds " +
+            "AND j.status = :running " +
+            "AND EXISTS (SELECT s.jobId FROM JobStateModel s WHERE s.jobId = j.id AND s.claimToken = :claimToken)")
+    List<Long> findClaimedJobIds(
+            @Param("jobIds") Collection<Long> jobIds,
+            @Param("running") JobStatus running,
+            @Param("claimToken") String claimToken
+    );
+
+    @Modifying
+    @Query("UPDATE JobModel j " +
+            "SET j.status = :running, j.lastRanAt = :claimedAt, j.lastRanBy = :claimedBy " +
+            "WHERE j.id = :jobId " +
+            "AND j.status = :failed " +
+            "AND j.attempts = :attempts")
+    int claimRetry(
+            @Param("jobId") Long jobId,
+            @Param("attempts") int attempts,
+            @Param("failed") JobStatus failed,
+            @Param("running") JobStatus running,
+            @Param("claimedAt") Instant claimedAt,
+            @Param("claimedBy") String claimedBy
+    );
+
+    @Modifying
+    @Query("UPDATE JobModel j SET j.attempts = 0 WHERE j.id IN :jobIds")
+    int resetAttempts(@Param("jobIds") Collection<Long> jobIds);
+
+    @Modifying
+    @Query("UPDATE JobModel j " +
+            "SET j.status = :status, j.lastRanAt = :lastRanAt, j.lastRanBy = :lastRanBy " +
+            "WHERE j.id = :jobId " +
+            "AND j.status = :running " +
+            "AND EXISTS (SELECT s.jobId FROM JobStateModel s WHERE s.jobId = j.id AND s.claimToken = :claimToken)")
+    int releaseJob(
+            @Param("jobId") Long jobId,
+            @Param("status") JobStatus status,
+            @Param("lastRanAt") Instant lastRanAt,
+            @Param("lastRanBy") String lastRanBy,
+            @Param("running") JobStatus running,
+            @Param("claimToken") String claimToken
+    );
+
+    @Query("SELECT j FROM JobModel j " +
+            "WHERE j.status = :running " +
+            "AND j.id > :afterId " +
+            "AND EXISTS (SELECT s.jobId FROM JobStateModel s " +
+            "WHERE s.jobId = j.id " +
+            "AND (s.heartbeatAt < :heartbeatCutoff OR (s.heartbeatAt IS NULL AND j.lastRanAt < :deliveryCutoff))) " +
+            "ORDER BY j.id")
+    List<JobModel> findStuckJobs(
+            @Param("running") JobStatus running,
+            @Param("heartbeatCutoff") Instant heartbeatCutoff,
+            @Param("deliveryCutoff") Instant deliveryCutoff,
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
+
+    @Query("SELECT j.id FROM JobModel j " +
+            "WHERE j.id IN :jobIds " +
+            "AND j.status = :running " +
+            "AND EXISTS (SELECT s.jobId FROM JobStateModel s WHERE s.jobId = j.id AND s.heartbeatAt < :heartbeatCutoff)")
+    List<Long> findStalledJobIds(
+            @Param("jobIds") Collection<Long> jobIds,
+            @Param("running") JobStatus running,
+            @Param("heartbeatCutoff") Instant heartbeatCutoff
+    );
+
+    @Query("SELECT j.id FROM JobModel j " +
+            "WHERE j.id IN :jobIds " +
+            "AND j.status = :running " +
+            "AND j.lastRanAt < :deliveryCutoff " +
+            "AND EXISTS (SELECT s.jobId FROM JobStateModel s WHERE s.jobId = j.id AND s.heartbeatAt IS NULL)")
+    List<Long> findUndeliveredJobIds(
+            @Param("jobIds") Collection<Long> jobIds,
+            @Param("running") JobStatus running,
+            @Param("deliveryCutoff") Instant deliveryCutoff
+    );
+
+    @Modifying
+    @Query("UPDATE JobModel j SET j.status = :failed, j.attempts = j.attempts + 1 WHERE j.id IN :jobIds")
+    int reapJobs(
+            @Param("jobIds") Collection<Long> jobIds,
+            @Param("failed") JobStatus failed
+    );
+
+    @Modifying
+    @Query("UPDATE JobModel j SET j.status = :failed WHERE j.id IN :jobIds")
+    int failJobs(
+            @Param("jobIds") Collection<Long> jobIds,
+            @Param("failed") JobStatus failed
+    );
+
+    @Query("SELECT j FROM JobModel j " +
+            "WHERE j.scheduleType = :once " +
+            "AND (j.status = :success OR (j.status = :failed AND j.attempts >= :retryLimit) OR j.jobType IN :neverQueuedTypes) " +
+            "AND COALESCE(j.lastRanAt, j.executeAt) < :cutoff " +
+            "AND j.id > :afterId " +
+            "ORDER BY j.id")
+    List<JobModel> findArchivableJobs(
+            @Param("once") ScheduleType once,
+            @Param("success") JobStatus success,
+            @Param("failed") JobStatus failed,
+            @Param("retryLimit") int retryLimit,
+            @Param("neverQueuedTypes") Collection<JobType> neverQueuedTypes,
+            @Param("cutoff") Instant cutoff,
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
+
+    @Query("SELECT j FROM JobModel j " +
+            "WHERE j.jobType = :jobType " +
+            "AND j.id > :afterId " +
+            "ORDER BY j.id")
+    List<JobModel> findJobsByType(
+            @Param("jobType") JobType jobType,
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
+
+    @Modifying
+    @Query("DELETE FROM JobModel j WHERE j.id IN :jobIds")
+    int deleteJobs(@Param("jobIds") Collection<Long> jobIds);
+
+    @Query("SELECT j FROM JobModel j " +
+            "WHERE j.id > :afterId " +
+            "AND NOT EXISTS (SELECT s.jobId FROM JobStateModel s WHERE s.jobId = j.id) " +
+            "ORDER BY j.id")
+    List<JobModel> findUnindexedJobs(
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
 }
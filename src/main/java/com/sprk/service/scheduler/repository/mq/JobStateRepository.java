@@ -0,0 +1,95 @@
+package com.sprk.service.scheduler.repository.mq;
+
+import com.sprk.commons.entity.mq.tag.JobStatus;
+import com.sprk.service.scheduler.consumer.JobFailure;
+import com.sprk.service.scheduler.entity.mq.JobStateModel;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+
+
+public interface JobStateRepository extends JpaRepository<JobStateModel, Long> {
+    @Query("SELECT COALESCE(MAX(s.jobId), 0) FROM JobStateModel s")
+    long findLastIndexedJobId();
+
+    @Query("SELECT s FROM JobStateModel s " +
+            "JOIN JobModel j ON j.id = s.jobId " +
+            "WHERE s.nextFireAt <= :until " +
+            "AND j.status NOT IN :excludedStatuses " +
+            "AND s.jobId > :afterId " +
+            "ORDER BY s.jobId")
+    List<JobStateModel> findUpcomingJobStates(
+            @Param("until") Instant until,
+            @Param("excludedStatuses") Collection<JobStatus> excludedStatuses,
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
+
+    @Modifying
+    @Query("DELETE FROM JobStateModel s WHERE s.jobId IN :jobIds")
+    int deleteJobStates(@Param("jobIds") Collection<Long> jobIds);
+
+    @Modifying
+    @Query("UPDATE JobStateModel s SET s.heartbeatAt = :now WHERE s.jobId IN :jobIds")
+    int touchHeartbeats(
+            @Param("jobIds") Collection<Long> jobIds,
+            @Param("now") Instant now
+    );
+
+    /**
+     * Stamps a new claim on the states of the given jobs. The heartbeat of an earlier run is cleared, as the run
+     * of the new claim only starts beating once a consumer picks its message up. A null token drops the claim,
+     * so a message still published for it is stale.
+     */
+    @Modifying
+    @Query("UPDATE JobStateModel s SET s.claimToken = :claimToken, s.heartbeatAt = NULL WHERE s.jobId IN :jobIds")
+    int saveClaimToken(
+            @Param("jobIds") Collection<Long> jobIds,
+            @Param("claimToken") String claimToken
+    );
+
+    @Modifying
+    @Query("UPDATE JobStateModel s SET s.checkpoint = :checkpoint WHERE s.jobId = :jobId")
+    int saveCheckpoint(
+            @Param("jobId") Long jobId,
+            @Param("checkpoint") String checkpoint
+    );
+
+    @Modifying
+    @Query("UPDATE JobStateModel s SET s.checkpoint = NULL WHERE s.jobId IN :jobIds")
+    int clearCheckpoints(@Param("jobIds") Collection<Long> jobIds);
+
+    @Modifying
+    @Query("UPDATE JobStateModel s SET s.lastFailure = :failure, s.lastFailedAt = :failedAt WHERE s.jobId = :jobId")
+    int saveFailure(
+            @Param("jobId") Long jobId,
+            @Param("failure") JobFailure failure,
+            @Param("failedAt") Instant failedAt
+    );
+
+    @Modifying
+    @Query("UPDATE JobStateModel s SET s.nextFireAt = NULL, s.quarantinedAt = :quarantinedAt, s.quarantineCause = :cause WHERE s.jobId = :jobId")
+    int quarantine(
+            @Param("jobId") Long jobId,
+            @Param("quarantinedAt") Instant quarantinedAt,
+            @Param("cause") String cause
+    );
+
+    @Modifying
+    @Query("UPDATE JobStateModel s " +
+            "SET s.nextFireAt = :nextFireAt, s.quarantinedAt = NULL, s.quarantineCause = NULL " +
+            "WHERE s.jobId = :jobId " +
+            "AND s.quarantinedAt IS NOT NULL")
+    int releaseQuarantine(
+            @Param("jobId") Long jobId,
+            @Param("nextFireAt") Instant nextFireAt
+    );
+}
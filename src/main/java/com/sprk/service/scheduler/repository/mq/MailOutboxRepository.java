@@ -0,0 +1,62 @@
+package com.sprk.service.scheduler.repository.mq;
+
+import com.sprk.service.scheduler.entity.mq.MailOutboxModel;
+import com.sprk.service.scheduler.tag.MailOutboxStatus;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+
+
+public interface MailOutboxRepository extends JpaRepository<MailOutboxModel, Long> {
+    @Query("SELECT m FROM MailOutboxModel m " +
+            "WHERE m.status = com.sprk.service.scheduler.tag.MailOutboxStatus.PENDING " +
+            "AND m.nextAttemptAt <= :now " +
+            "ORDER BY m.nextAttemptAt, m.id")
+    List<MailOutboxModel> findDueMails(
+            @Param("now") Instant now,
+            Pageable pageable
+    );
+
+    @Modifying
+    @Query("UPDATE MailOutboxModel m SET m.attempts = m.attempts + 1, m.nextAttemptAt = :leaseUntil " +
+            "WHERE m.id = :id " +
+            "AND m.status = com.sprk.service.scheduler.tag.MailOutboxStatus.PENDING " +
+            "AND m.nextAttemptAt <= :now")
+    int claimMail(
+            @Param("id") Long id,
+            @Param("now") Instant now,
+            @Param("leaseUntil") Instant leaseUntil
+    );
+
+    @Modifying
+    @Query("UPDATE MailOutboxModel m SET m.status = com.sprk.service.scheduler.tag.MailOutboxStatus.SENT, " +
+            "m.nextAttemptAt = NULL, m.lastError = NULL, m.sentAt = :sentAt " +
+            "WHERE m.id = :id")
+    int markSent(
+            @Param("id") Long id,
+            @Param("sentAt") Instant sentAt
+    );
+
+    @Modifying
+    @Query("UPDATE MailOutboxModel m SET m.status = :status, m.nextAttemptAt = :nextAttemptAt, m.lastError = :error " +
+            "WHERE m.id = :id")
+    int markFailed(
+            @Param("id") Long id,
+            @Param("status") MailOutboxStatus status,
+            @Param("nextAttemptAt") Instant nextAttemptAt,
+            @Param("error") String error
+    );
+
+    @Modifying
+    @Query("DELETE FROM MailOutboxModel m " +
+            "WHERE m.status = com.sprk.service.scheduler.tag.MailOutboxStatus.SENT " +
+            "AND m.sentAt < :before")
+    int deleteSentMails(@Param("before") Instant before);
+}
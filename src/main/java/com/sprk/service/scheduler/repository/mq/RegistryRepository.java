@@ -3,9 +3,11 @@ package com.sprk.service.scheduler.repository.mq;
 import com.sprk.commons.entity.mq.RegistryModel;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 
@@ -19,4 +21,11 @@ public interface RegistryRepository extends JpaRepository<RegistryModel, Long> {
 
     @Query("SELECT r FROM RegistryModel r ORDER BY r.lastUpdateReceived DESC")
     List<RegistryModel> findMostRecent();
+
+    @Modifying
+    @Query("UPDATE RegistryModel r SET r.lastUpdateReceived = :now, r.ipAddress = :ipAddress WHERE r.macAddress = :macAddress")
+    int renewLease(@Param("macAddress") String macAddress, @Param("ipAddress") String ipAddress, @Param("now") Instant now);
+
+    @Query("SELECT r.macAddress FROM RegistryModel r WHERE r.lastUpdateReceived >= :cutoff")
+    List<String> findLiveMacAddresses(@Param("cutoff") Instant cutoff);
 }
@@ -2,10 +2,12 @@ package com.sprk.service.scheduler.repository.primary;
 
 import com.sprk.commons.entity.primary.student.mapping.BookingCourseGroupMapping;
 import com.sprk.commons.entity.primary.student.tag.BookingStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 
@@ -16,4 +18,24 @@ public interface BookingCourseGroupMappingRepository extends JpaRepository<Booki
     List<BookingCourseGroupMapping> findAllByReleasableTrue(
             @Param("status") BookingStatus status
     );
+
+    @Query("SELECT m FROM BookingCourseGroupMapping m " +
+            "JOIN m.booking b " +
+            "WHERE m.status = :status " +
+            "AND b.bookingId IN :bookingIds")
+    List<BookingCourseGroupMapping> findAllByReleasableTrue(
+            @Param("status") BookingStatus status,
+            @Param("bookingIds") Collection<Long> bookingIds
+    );
+
+    @Query("SELECT DISTINCT b.bookingId FROM BookingCourseGroupMapping m " +
+            "JOIN m.booking b " +
+            "WHERE m.status = :status " +
+            "AND b.bookingId > :afterId " +
+            "ORDER BY b.bookingId")
+    List<Long> findBookingIdsByStatus(
+            @Param("status") BookingStatus status,
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
 }
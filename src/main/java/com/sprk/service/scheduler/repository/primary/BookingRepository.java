@@ -5,6 +5,7 @@ import com.sprk.commons.entity.primary.student.tag.BookingStatus;
 import com.sprk.commons.entity.primary.student.tag.ClearanceStatus;
 import com.sprk.commons.entity.primary.student.tag.StudentStatus;
 import com.sprk.commons.entity.primary.student.tag.CertificateReleaseStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -90,4 +91,18 @@ public interface BookingRepository extends JpaRepository<BookingModel, Long> {
             @Param("status") BookingStatus status);
 
 
+
+    @Query("SELECT DISTINCT b FROM BookingModel b " +
+            "JOIN b.courseGroupMappings bcg " +
+            "WHERE b.estimatedExpirationDate <= :expirationDate " +
+            "AND bcg.status = :status " +
+            "AND b.bookingId > :afterId " +
+            "ORDER BY b.bookingId")
+    List<BookingModel> findDistinctBookingsByBookingStatus(
+            @Param("expirationDate") Instant expirationDate,
+            @Param("status") BookingStatus status,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+
 }
@@ -1,10 +1,15 @@
 package com.sprk.service.scheduler.repository.primary;
 
 import com.sprk.commons.entity.primary.examination.CertificateModel;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 
 
 public interface CertificateRepository extends JpaRepository<CertificateModel, Long> {
     Boolean existsByCertificateUid(String certificateId);
+
+    List<CertificateModel> findByCertificateUidGreaterThanOrderByCertificateUidAsc(String certificateUid, Pageable pageable);
 }
@@ -4,6 +4,11 @@ package com.sprk.service.scheduler.repository.website;
 import com.sprk.commons.entity.website.CertificateWModel;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface CertificateWRepository extends JpaRepository<CertificateWModel, Long> {
     CertificateWModel findByCertificateUid(String certUid);
+
+    List<CertificateWModel> findAllByCertificateUidIn(Collection<String> certUids);
 }
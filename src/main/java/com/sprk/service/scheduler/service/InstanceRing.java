@@ -0,0 +1,102 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.service.scheduler.properties.scheduler.SchedulerConfigProperties;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+
+
+/**
+ * Consistent hash ring of the live scheduler instances.
+ * Every instance places a number of virtual nodes on the ring, and a job belongs to the first node found
+ * clockwise from the hash of its id. When an instance joins or its lease expires only the jobs next to its
+ * nodes move, so each job is published by exactly one live instance.
+ */
+@Component
+@RequiredArgsConstructor
+public class InstanceRing {
+
+    private final SchedulerConfigProperties schedulerConfigProperties;
+
+    private volatile NavigableMap<Long, String> ring = Collections.emptyNavigableMap();
+    private volatile Set<String> members = Set.of();
+    private volatile String currentMember;
+
+
+
+    /**
+     * Rebuilds the ring for the given set of live instances.
+     *
+     * @param liveMembers The MAC addresses of every instance holding a valid lease.
+     * @param self The MAC address of the current instance.
+     * @return true if the membership changed, false otherwise.
+     */
+    public synchronized boolean update(Collection<String> liveMembers, String self) {
+        Set<String> newMembers = new HashSet<>(liveMembers);
+        if (null != self) {
+            newMembers.add(self);
+        }
+
+        if (newMembers.equals(members) && Objects.equals(self, currentMember)) {
+            return false;
+        }
+
+        NavigableMap<Long, String> newRing = new TreeMap<>();
+        int virtualNodes = schedulerConfigProperties.getVirtualNodes();
+        for (String member : newMembers) {
+            for (int node = 0; node < virtualNodes; node++) {
+                newRing.put(hash(((long) member.hashCode() << 32) | node), member);
+            }
+        }
+
+        ring = newRing;
+        members = Set.copyOf(newMembers);
+        currentMember = self;
+        return true;
+    }
+
+
+
+    /**
+     * Checks whether the given job is assigned to the current instance.
+     * Until the ring is known (or when the instance has no identity) every job is treated as owned,
+     * the atomic claim in {@link JobProcessor} still prevents the same job from being published twice.
+     *
+     * @param jobId The ID of the job.
+     * @return true if the current instance should publish the job, false otherwise.
+     */
+    public boolean isOwned(Long jobId) {
+        NavigableMap<Long, String> snapshot = ring;
+        if (snapshot.isEmpty() || null == currentMember) {
+            return true;
+        }
+
+        Map.Entry<Long, String> owner = snapshot.ceilingEntry(hash(jobId));
+        if (null == owner) {
+            owner = snapshot.firstEntry();
+        }
+        return currentMember.equals(owner.getValue());
+    }
+
+
+
+    /**
+     * @return The MAC addresses of the instances currently on the ring.
+     */
+    public Set<String> getMembers() {
+        return members;
+    }
+
+
+
+    // Finalizer of SplitMix64, spreads sequential ids evenly over the ring.
+    private static long hash(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,171 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.commons.entity.mq.tag.JobType;
+import com.sprk.service.scheduler.dao.JPAProxy;
+import com.sprk.service.scheduler.entity.mq.MailOutboxModel;
+import com.sprk.service.scheduler.properties.amqp.AMQPConfigProperties;
+import com.sprk.service.scheduler.properties.scheduler.SchedulerConfigProperties;
+import com.sprk.service.scheduler.repository.mq.JobHistoryPartitionRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+
+
+/**
+ * Keeps the job table small by moving finished jobs into the month partitioned history table.
+ * Finished ONCE jobs (and jobs of types that are never queued) older than the configured age are moved
+ * in chunks, each chunk in its own transaction. The FAILED_TEMPLATES jobs left from before the mail outbox
+ * are archived only once their mails are moved into the outbox. History older than the retention is
+ * removed by dropping its month partition instead of deleting rows.
+ * Only the instance that owns the archiver on the ring runs it.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class JobArchiver {
+
+    private final JPAProxy jpaProxy;
+    private final JobProcessor jobProcessor;
+    private final MailOutbox mailOutbox;
+    private final InstanceRing instanceRing;
+    private final AMQPConfigProperties amqpConfigProperties;
+    private final SchedulerConfigProperties schedulerConfigProperties;
+    private final Clock clock;
+
+    /**
+     * The key the archiver is assigned by on the ring, it never collides with a job ID.
+     */
+    private static final Long ARCHIVER_KEY = -1L;
+
+    private final AtomicBoolean isArchiving = new AtomicBoolean(false);
+
+
+
+    @Scheduled(fixedDelayString = "${app.scheduler.archiveInterval}", initialDelay = 60_000)
+    public void autoArchiveJobs() {
+        if (instanceRing.isOwned(ARCHIVER_KEY) && isArchiving.compareAndSet(false, true)) {
+            try {
+                maintainPartitions();
+                moveFailedTemplates();
+                archiveJobs();
+            } catch (Exception exception) {
+                log.error("Failed to archive jobs.", exception);
+            } finally {
+                isArchiving.set(false);
+            }
+        }
+    }
+
+
+
+    /**
+     * Moves the mails of the FAILED_TEMPLATES jobs into the mail outbox, one chunk of jobs at a time, and archives
+     * each chunk in the same transaction, so the mails are retried by the outbox instead of archived unsent.
+     */
+    private void moveFailedTemplates() {
+        int chunkSize = schedulerConfigProperties.getArchiveChunkSize();
+        long moved = 0L;
+        long afterId = 0L;
+        List<JobModel> jobs;
+        do {
+            jobs = jpaProxy.getFailedTemplatesJobs(afterId, chunkSize);
+            if (!jobs.isEmpty()) {
+                List<MailOutboxModel> mails = jobs.stream()
+                        .flatMap(job -> mailOutbox.toMails(job).stream())
+                        .toList();
+                jpaProxy.moveToMailOutbox(jobs, mails, Instant.now(clock));
+                moved += mails.size();
+                afterId = jobs.get(jobs.size() - 1).getId();
+            }
+        } while (jobs.size() == chunkSize);
+
+        if (0 < moved) {
+            log.info("Moved {} mails of FAILED_TEMPLATES jobs into the mail outbox.", moved);
+        }
+    }
+
+
+
+    /**
+     * Moves the archivable jobs into the history table, one chunk at a time.
+     */
+    private void archiveJobs() {
+        Instant cutoff = Instant.now(clock).minusMillis(schedulerConfigProperties.getArchiveAfter());
+        int chunkSize = schedulerConfigProperties.getArchiveChunkSize();
+        Set<JobType> neverQueuedTypes = Arrays.stream(JobType.values())
+                .filter(jobType -> null == jobProcessor.resolveRoutingKey(jobType))
+                // Archived with their mails moved into the outbox instead.
+                .filter(jobType -> JobType.FAILED_TEMPLATES != jobType)
+                .collect(Collectors.toSet());
+
+        long archived = 0L;
+        long afterId = 0L;
+        List<JobModel> jobs;
+        do {
+            jobs = jpaProxy.getArchivableJobs(amqpConfigProperties.getRetryLimit(), neverQueuedTypes, cutoff, afterId, chunkSize);
+            if (!jobs.isEmpty()) {
+                jpaProxy.archiveJobs(jobs, Instant.now(clock));
+                archived += jobs.size();
+                afterId = jobs.get(jobs.size() - 1).getId();
+            }
+        } while (jobs.size() == chunkSize);
+
+        if (0 < archived) {
+            log.info("Archived {} finished jobs older than {}.", archived, cutoff);
+        }
+    }
+
+
+
+    /**
+     * Makes sure the current and the next month have a partition, and drops the partitions past the retention.
+     * The table is created unpartitioned by the schema update, so it is partitioned on the first run.
+     */
+    private void maintainPartitions() {
+        YearMonth currentMonth = YearMonth.now(clock);
+        List<String> partitions = jpaProxy.getJobHistoryPartitionNames();
+        if (partitions.isEmpty()) {
+            jpaProxy.partitionJobHistory(currentMonth);
+            partitions = List.of(JobHistoryPartitionRepository.partitionName(currentMonth), JobHistoryPartitionRepository.OVERFLOW_PARTITION);
+        }
+
+        // Partitions are split off the overflow partition in ascending order.
+        for (YearMonth month : List.of(currentMonth, currentMonth.plusMonths(1))) {
+            if (!partitions.contains(JobHistoryPartitionRepository.partitionName(month))) {
+                jpaProxy.addJobHistoryPartition(month);
+            }
+        }
+
+        YearMonth oldestKeptMonth = currentMonth.minusMonths(schedulerConfigProperties.getHistoryRetentionMonths());
+        for (String partition : partitions) {
+            YearMonth month = toMonth(partition);
+            if (null != month && month.isBefore(oldestKeptMonth)) {
+                jpaProxy.dropJobHistoryPartition(month);
+                log.info("Dropped job history of {}.", month);
+            }
+        }
+    }
+
+
+
+    private static YearMonth toMonth(String partition) {
+        if (!partition.matches("p\\d{6}")) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(partition.substring(1, 5)), Integer.parseInt(partition.substring(5)));
+    }
+}
@@ -0,0 +1,160 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.commons.entity.mq.tag.ScheduleType;
+
+import org.springframework.scheduling.support.CronExpression;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+
+
+/**
+ * Calendar of a job, i.e. the instants at which its schedule fires.
+ * A ONCE job fires at its execution time. Every other job fires daily at the hour and minute (UTC) of its
+ * execution time, optionally restricted to the given days of the week and/or dates of the month.
+ * When both days and dates are given either of them matches, the same as cron.
+ * The cron expressions only depend on the slot (time of day, days and dates), so they are compiled the first
+ * time a slot is seen and shared by every calendar of that slot afterwards.
+ */
+public final class JobCalendar {
+
+    private static final Map<Slot, List<CronExpression>> COMPILED_SLOTS = new ConcurrentHashMap<>();
+
+    private final Instant executeAt;
+    private final List<CronExpression> expressions;
+
+    private record Slot(int hour, int minute, Set<DayOfWeek> days, Set<Integer> dates) {}
+
+    private JobCalendar(Instant executeAt, List<CronExpression> expressions) {
+        this.executeAt = executeAt;
+        this.expressions = expressions;
+    }
+
+
+
+    /**
+     * Builds the calendar of the given job.
+     *
+     * @param model The job model containing the schedule type, execution time, days and dates.
+     * @return The calendar of the job.
+     */
+    public static JobCalendar of(JobModel model) {
+        return of(model.getScheduleType(), model.getExecuteAt(), model.getDays(), model.getDates());
+    }
+
+    /**
+     * Builds a calendar from its parts.
+     *
+     * @param scheduleType The schedule type of the job.
+     * @param executeAt The execution time, its hour and minute define the daily slot of recurring jobs.
+     * @param days The days of the week a recurring job is restricted to, or null/empty for every day.
+     * @param dates The dates of the month a recurring job is restricted to, or null/empty for every day.
+     * @return The calendar.
+     * @throws IllegalArgumentException If a date lies outside 1-31.
+     */
+    public static JobCalendar of(ScheduleType scheduleType, Instant executeAt, Collection<DayOfWeek> days, Collection<Integer> dates) {
+        Objects.requireNonNull(executeAt);
+        if (ScheduleType.ONCE.equals(scheduleType)) {
+            return new JobCalendar(executeAt, List.of());
+        }
+
+        if (null != dates) {
+            dates.forEach(JobCalendar::requireValidDate);
+        }
+        ZonedDateTime time = executeAt.atZone(ZoneOffset.UTC);
+        Slot slot = new Slot(
+                time.getHour(),
+                time.getMinute(),
+                null == days ? Set.of() : Set.copyOf(days),
+                null == dates ? Set.of() : Set.copyOf(dates)
+        );
+        return new JobCalendar(executeAt, COMPILED_SLOTS.computeIfAbsent(slot, JobCalendar::compile));
+    }
+
+
+
+    private static List<CronExpression> compile(Slot slot) {
+        String time = "0 " + slot.minute() + " " + slot.hour();
+        List<CronExpression> expressions = new ArrayList<>(2);
+        if (!slot.days().isEmpty()) {
+            String daysOfWeek = slot.days().stream()
+                    .sorted()
+                    .map(day -> day.name().substring(0, 3))
+                    .collect(Collectors.joining(","));
+            expressions.add(CronExpression.parse(time + " * * " + daysOfWeek));
+        }
+        if (!slot.dates().isEmpty()) {
+            String daysOfMonth = slot.dates().stream()
+                    .sorted()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(","));
+            expressions.add(CronExpression.parse(time + " " + daysOfMonth + " * *"));
+        }
+        if (expressions.isEmpty()) {
+            expressions.add(CronExpression.parse(time + " * * *"));
+        }
+        return List.copyOf(expressions);
+    }
+
+
+
+    /**
+     * @return true if the calendar fires repeatedly, false if it fires once.
+     */
+    public boolean isRecurring() {
+        return !expressions.isEmpty();
+    }
+
+
+
+    /**
+     * @return The first instant the calendar fires, which is never before the execution time.
+     */
+    public Instant firstOccurrence() {
+        return isRecurring() ? nextOccurrenceAfter(executeAt.minusNanos(1)) : executeAt;
+    }
+
+
+
+    /**
+     * Computes the first instant strictly after the given one at which the calendar fires.
+     *
+     * @param after The instant after which the next occurrence should fall.
+     * @return The next occurrence, or null if the calendar does not fire again.
+     */
+    public Instant nextOccurrenceAfter(Instant after) {
+        if (!isRecurring()) {
+            return after.isBefore(executeAt) ? executeAt : null;
+        }
+
+        ZonedDateTime from = after.atZone(ZoneOffset.UTC);
+        Instant next = null;
+        for (CronExpression expression : expressions) {
+            ZonedDateTime candidate = expression.next(from);
+            if (null != candidate && (null == next || candidate.toInstant().isBefore(next))) {
+                next = candidate.toInstant();
+            }
+        }
+        return next;
+    }
+
+
+
+    private static void requireValidDate(Integer date) {
+        if (null == date || date < 1 || date > 31) {
+            throw new IllegalArgumentException("Date of the month must be between 1 and 31, found " + date + ".");
+        }
+    }
+}
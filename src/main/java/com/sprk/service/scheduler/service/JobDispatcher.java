@@ -0,0 +1,170 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.commons.entity.mq.tag.JobType;
+import com.sprk.service.scheduler.dao.JPAProxy;
+import com.sprk.service.scheduler.entity.mq.JobStateModel;
+import com.sprk.service.scheduler.properties.scheduler.SchedulerConfigProperties;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+
+/**
+ * Fires jobs at their exact next fire time.
+ * Upcoming fire times are loaded from the job table by the reconciler in {@link SchedulerService} and kept
+ * in an in-memory priority queue. A single dispatcher thread sleeps until the earliest fire time, loads only
+ * the jobs that are due and hands them to {@link JobProcessor#publishJobs(Collection, Map)}, so the database is
+ * not touched between fire times.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class JobDispatcher {
+
+    private final JPAProxy jpaProxy;
+    private final JobProcessor jobProcessor;
+    private final SchedulerConfigProperties schedulerConfigProperties;
+    private final Clock clock;
+
+    private final PriorityQueue<Trigger> triggers = new PriorityQueue<>(Comparator.comparing(Trigger::fireAt));
+    private final Map<Long, Instant> scheduledFireTimes = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition headChanged = lock.newCondition();
+
+    private volatile boolean running;
+    private Thread dispatcherThread;
+
+    private record Trigger(Instant fireAt, Long jobId) {}
+
+
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        dispatcherThread = new Thread(this::dispatch, "K-JobDispatcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        dispatcherThread.interrupt();
+    }
+
+
+
+    /**
+     * Adds or moves the fire time of the given jobs. Jobs without a next fire time are removed.
+     *
+     * @param states The job states holding the next fire time of each job.
+     */
+    public void schedule(Collection<JobStateModel> states) {
+        lock.lock();
+        try {
+            Instant previousHead = Optional.ofNullable(triggers.peek()).map(Trigger::fireAt).orElse(null);
+            for (JobStateModel state : states) {
+                if (null == state.getNextFireAt()) {
+                    scheduledFireTimes.remove(state.getJobId());
+                } else if (!state.getNextFireAt().equals(scheduledFireTimes.put(state.getJobId(), state.getNextFireAt()))) {
+                    // A previous trigger of the same job becomes stale and is skipped when it is polled.
+                    triggers.add(new Trigger(state.getNextFireAt(), state.getJobId()));
+                }
+            }
+
+            Trigger head = triggers.peek();
+            if (null != head && (null == previousHead || head.fireAt().isBefore(previousHead))) {
+                headChanged.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+
+    /**
+     * Waits for the earliest trigger and publishes every job that is due, in batches.
+     */
+    private void dispatch() {
+        while (running) {
+            try {
+                List<Long> dueJobIds = awaitDueJobIds();
+                if (!dueJobIds.isEmpty()) {
+                    fire(dueJobIds);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception exception) {
+                log.error("Failed to dispatch due jobs.", exception);
+            }
+        }
+    }
+
+
+
+    /**
+     * Blocks until at least one trigger is due and removes up to one batch of due job IDs from the queue.
+     *
+     * @return The IDs of the jobs that are due.
+     * @throws InterruptedException If the dispatcher is stopped while waiting.
+     */
+    private List<Long> awaitDueJobIds() throws InterruptedException {
+        lock.lock();
+        try {
+            Trigger head = triggers.peek();
+            while (null == head || head.fireAt().isAfter(Instant.now(clock))) {
+                if (null == head) {
+                    headChanged.await();
+                } else {
+                    long waitNanos = Duration.between(Instant.now(clock), head.fireAt()).toNanos();
+                    headChanged.awaitNanos(Math.max(waitNanos, 0L));
+                }
+                head = triggers.peek();
+            }
+
+            int batchSize = schedulerConfigProperties.getBatchSize();
+            Instant now = Instant.now(clock);
+            List<Long> dueJobIds = new ArrayList<>();
+            while (dueJobIds.size() < batchSize && null != triggers.peek() && !triggers.peek().fireAt().isAfter(now)) {
+                Trigger trigger = triggers.poll();
+                // Only fire the trigger that matches the latest known fire time of the job.
+                if (scheduledFireTimes.remove(trigger.jobId(), trigger.fireAt())) {
+                    dueJobIds.add(trigger.jobId());
+                }
+            }
+            return dueJobIds;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+
+    /**
+     * Loads the due jobs and publishes the ones that are ready to run.
+     *
+     * @param jobIds The IDs of the jobs whose fire time has been reached.
+     */
+    private void fire(List<Long> jobIds) {
+        List<JobModel> jobs = jpaProxy.getJobsByIds(jobIds);
+        for (ImmutablePair<Long, JobType> job : jobProcessor.publishJobs(jobs, jpaProxy.getNextFireTimes(jobIds))) {
+            log.info("Added Job ({}) in the queue. [{}]", job.getLeft(), job.getRight());
+        }
+    }
+}
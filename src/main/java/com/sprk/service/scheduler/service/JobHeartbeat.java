@@ -0,0 +1,100 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.service.scheduler.dao.JPAProxy;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+
+/**
+ * Reports the jobs this instance is executing, so the reaper in {@link SchedulerService} can tell a long
+ * running job apart from one whose worker died. A claimed job only starts beating once a consumer executes it,
+ * so a job whose message is still queued is not mistaken for a dead one.
+ * Every interval a single update refreshes the heartbeat of all the jobs in flight.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class JobHeartbeat {
+
+    private final JPAProxy jpaProxy;
+    private final Clock clock;
+
+    private final Set<Long> runningJobIds = ConcurrentHashMap.newKeySet();
+
+
+
+    /**
+     * Starts reporting the given job as being executed, beginning with an immediate heartbeat.
+     *
+     * @param jobId The ID of the job that is about to be executed.
+     */
+    public void register(Long jobId) {
+        register(List.of(jobId));
+    }
+
+
+
+    /**
+     * Starts reporting the given jobs as being executed, beginning with one immediate heartbeat for all of them.
+     *
+     * @param jobIds The IDs of the jobs that are about to be executed.
+     */
+    public void register(Collection<Long> jobIds) {
+        runningJobIds.addAll(jobIds);
+        beat(List.copyOf(jobIds));
+    }
+
+
+
+    /**
+     * Stops reporting the given job.
+     *
+     * @param jobId The ID of the job whose execution has finished.
+     */
+    public void unregister(Long jobId) {
+        runningJobIds.remove(jobId);
+    }
+
+
+
+    /**
+     * Stops reporting the given jobs.
+     *
+     * @param jobIds The IDs of the jobs whose execution has finished.
+     */
+    public void unregister(Collection<Long> jobIds) {
+        runningJobIds.removeAll(jobIds);
+    }
+
+
+
+    @Scheduled(fixedDelayString = "${app.scheduler.heartbeatInterval}")
+    public void beatRunningJobs() {
+        if (!runningJobIds.isEmpty()) {
+            beat(List.copyOf(runningJobIds));
+        }
+    }
+
+
+
+    private void beat(List<Long> jobIds) {
+        try {
+            jpaProxy.touchJobHeartbeats(jobIds, Instant.now(clock));
+        } catch (Exception exception) {
+            // A missed heartbeat is recovered by the next one, well within the reaper timeout.
+            log.error("Failed to send heartbeat for jobs {}.", jobIds, exception);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.commons.entity.mq.tag.JobType;
+import com.sprk.commons.entity.mq.tag.ScheduleType;
+import com.sprk.service.scheduler.dao.JPAProxy;
+import com.sprk.service.scheduler.entity.mq.JobOutboxModel;
+import com.sprk.service.scheduler.properties.scheduler.SchedulerConfigProperties;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+
+/**
+ * Adds the jobs that handlers derive from their work (e.g. the mails of released certificates) through an
+ * outbox on the mq datasource. The handler writes the job into the outbox within its own transaction, so the
+ * job exists if and only if the work that derived it committed. Straight after the commit the outbox is relayed
+ * into the job table and the scheduler indexes the new jobs, so a derived job that is due starts right away
+ * instead of waiting for the next reconcile. Entries left behind, e.g. by a crash after the commit, are relayed by a sweep.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class JobOutbox {
+
+    private final JPAProxy jpaProxy;
+    private final JobOutboxRelay jobOutboxRelay;
+    private final SchedulerService schedulerService;
+    private final SchedulerConfigProperties schedulerConfigProperties;
+    private final TaskExecutor taskExecutor;
+    private final Clock clock;
+
+    private final AtomicBoolean isRelaying = new AtomicBoolean(false);
+    private final AtomicBoolean isRelayRequested = new AtomicBoolean(false);
+
+
+
+    /**
+     * Adds a job to the outbox as part of the current transaction, it is added to the job table once the transaction commits.
+     * Takes the same arguments as {@link com.sprk.commons.dao.JobProxy#addJobInDB}.
+     */
+    public void addJob(String name, String description, String jsonData, JobType jobType, ScheduleType scheduleType, Instant executeAt, List<DayOfWeek> days, List<Integer> dates) {
+        jpaProxy.addToOutbox(JobOutboxModel.builder()
+                .name(name)
+                .description(description)
+                .jsonData(jsonData)
+                .jobType(jobType)
+                .scheduleType(scheduleType)
+                .executeAt(executeAt)
+                .days(JobOutboxModel.join(days))
+                .dates(JobOutboxModel.join(dates))
+                .createdAt(Instant.now(clock))
+                .build());
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                taskExecutor.execute(JobOutbox.this::relayJobs);
+            }
+        });
+    }
+
+
+
+    @Scheduled(fixedDelayString = "${app.scheduler.outboxRelayInterval}", initialDelay = 30_000)
+    public void autoRelayJobs() {
+        relayJobs();
+    }
+
+
+
+    /**
+     * Relays the outbox into the job table. Requests that arrive while a relay is in progress are served by
+     * another pass of the same relay, also when they arrive just as that relay is finishing.
+     */
+    private void relayJobs() {
+        isRelayRequested.set(true);
+        while (isRelayRequested.get() && isRelaying.compareAndSet(false, true)) {
+            try {
+                int relayed = 0;
+                while (isRelayRequested.getAndSet(false)) {
+                    relayed += relayOutbox();
+                }
+                if (0 < relayed) {
+                    // Index only the relayed jobs straight away, those that are due are published right after.
+                    schedulerService.publishNewJobs();
+                }
+            } catch (Exception exception) {
+                log.error("Failed to relay the job outbox.", exception);
+            } finally {
+                isRelaying.set(false);
+            }
+        }
+    }
+
+
+
+    /**
+     * @return The number of jobs this instance added to the job table.
+     */
+    private int relayOutbox() {
+        int batchSize = schedulerConfigProperties.getBatchSize();
+        int relayed = 0;
+        long afterId = 0L;
+        List<JobOutboxModel> entries;
+        do {
+            entries = jpaProxy.getOutboxEntries(afterId, batchSize);
+            for (JobOutboxModel entry : entries) {
+                try {
+                    if (jobOutboxRelay.relay(entry)) {
+                        relayed++;
+                    }
+                } catch (Exception exception) {
+                    // The entry stays in the outbox and is retried by the next relay.
+                    log.error("Failed to relay job ({}) of the outbox. [{}]", entry.getId(), entry.getJobType(), exception);
+                }
+            }
+            if (!entries.isEmpty()) {
+                afterId = entries.get(entries.size() - 1).getId();
+            }
+        } while (entries.size() == batchSize);
+        return relayed;
+    }
+}
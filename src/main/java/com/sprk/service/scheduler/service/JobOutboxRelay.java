@@ -0,0 +1,56 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.commons.dao.JobProxy;
+import com.sprk.service.scheduler.dao.JPAProxy;
+import com.sprk.service.scheduler.entity.mq.JobOutboxModel;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+
+
+/**
+ * Moves a single entry of the outbox into the job table.
+ */
+@Component
+@RequiredArgsConstructor
+public class JobOutboxRelay {
+
+    private final JPAProxy jpaProxy;
+    private final JobProxy jobProxy;
+
+
+
+    /**
+     * Adds the job of the entry and removes the entry in one transaction, so the job is added exactly once
+     * even if several instances relay the same entry.
+     *
+     * @param entry The outbox entry to relay.
+     * @return true if this call added the job, false if another relay already did.
+     */
+    @Transactional(
+            isolation = Isolation.READ_COMMITTED,
+            propagation = Propagation.REQUIRED
+    )
+    public boolean relay(JobOutboxModel entry) {
+        if (!jpaProxy.claimOutboxEntry(entry.getId())) {
+            return false;
+        }
+
+        jobProxy.addJobInDB(
+                entry.getName(),
+                entry.getDescription(),
+                entry.getJsonData(),
+                entry.getJobType(),
+                entry.getScheduleType(),
+                entry.getExecuteAt(),
+                entry.getDayList(),
+                entry.getDateList()
+        );
+        return true;
+    }
+}
@@ -1,29 +1,32 @@
 package com.sprk.service.scheduler.service;
 
 import com.sprk.commons.entity.mq.JobModel;
-import com.sprk.commons.entity.mq.RegistryModel;
 import com.sprk.commons.entity.mq.tag.JobStatus;
 import com.sprk.commons.entity.mq.tag.JobType;
-import com.sprk.commons.entity.mq.tag.ScheduleType;
 
-import com.sprk.service.scheduler.dao.JPAProxy;
+import com.sprk.service.scheduler.consumer.JobFailure;
+import com.sprk.service.scheduler.dao.JobStore;
+import com.sprk.service.scheduler.entity.mq.JobStateModel;
 import com.sprk.service.scheduler.properties.amqp.AMQPConfigProperties;
-import com.sprk.service.scheduler.tag.DeviceAddressType;
-import com.sprk.service.scheduler.util.DeviceIdentityWizard;
 
 import lombok.RequiredArgsConstructor;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
-import java.time.*;
-import java.util.Arrays;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.function.Predicate;
-import java.util.function.Supplier;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 
@@ -31,115 +34,240 @@ import java.util.function.Supplier;
 @RequiredArgsConstructor
 public class JobProcessor {
 
-    private final JPAProxy jpaProxy;
+    private final JobStore jobStore;
     private final AMQPConfigProperties amqpConfigProperties;
-    private final DeviceIdentityWizard deviceIdentity;
+    private final NodeIdentity nodeIdentity;
     private final RabbitTemplate rabbitTemplate;
+    private final InstanceRing instanceRing;
+    private final Clock clock;
 
-    private final Predicate<ScheduleType> isJobScheduleIsEveryday = ScheduleType.EVERYDAY::equals;
-    private final Predicate<Instant> isLastRanAtNull = Objects::isNull;
-    private final Predicate<Instant> isLastRanAtPastNow = lastRanAt -> LocalDate.now(ZoneOffset.UTC).isAfter(lastRanAt.atZone(ZoneId.of("UTC")).toLocalDate());
+    private static final String UNKNOWN_INSTANCE = "UNKNOWN";
+    private static final int QUARANTINE_CAUSE_LENGTH = 1000;
 
     /**
-     * Determines if a job is ready to be executed based on its model properties.
+     * The header carrying the attempt a job message was published for, so a redelivered message of an
+     * earlier attempt can be told apart from the current one.
+     */
+    public static final String ATTEMPT_HEADER = "x-job-attempt";
+
+    /**
+     * The header carrying the token of the claim a job message was published for, so a message whose claim the
+     * reaper has dropped can be told apart from the claim that replaced it.
+     */
+    public static final String CLAIM_HEADER = "x-job-claim";
+
+    private record JobSnapshot(JobStatus status, Instant lastRanAt, String lastRanBy) {}
+
+    /**
+     * Determines if a job is due to run, i.e. its stored next fire time has been reached.
+     * The fire time is computed from the calendar whenever the job is rescheduled, so this is only a comparison.
+     *
+     * @param nextFireAt The next fire time stored for the job, or null if it will never run again.
+     * @param now The current time.
+     * @return true if the job is due, false otherwise.
+     */
+    boolean isJobDue(Instant nextFireAt, Instant now) {
+        return null != nextFireAt && !nextFireAt.isAfter(now);
+    }
+
+
+
+    /**
+     * Checks if a recurring job is due for a new occurrence of its calendar rather than a retry of the last one.
      *
      * @param model The job model containing the job's properties.
-     * @return true if the job is ready to run, false otherwise.
+     * @param now The current time.
+     * @return true if the calendar has fired since the last run, false otherwise.
      */
-    boolean isJobReadyToRun(JobModel model) {
-        // If the job has never run before, it's ready to run.
-        if (model.getLastRanAt() == null) {
-            return true;
+    private boolean isNewOccurrence(JobModel model, Instant now) {
+        JobCalendar calendar = JobCalendar.of(model);
+        if (!calendar.isRecurring() || null == model.getLastRanAt()) {
+            return false;
         }
+        Instant nextOccurrence = calendar.nextOccurrenceAfter(model.getLastRanAt());
+        return null != nextOccurrence && !nextOccurrence.isAfter(now);
+    }
+
 
-        Instant now = Instant.now();
-        // Check if the retry delay has been exceeded since the last run.
-        boolean retryDelayExceeded = (model.getLastRanAt().toEpochMilli() + amqpConfigProperties.getRetryDelay()) < now.toEpochMilli();
-        // Check if the number of attempts has not been exceeded.
-        boolean attemptsNotExceeded = isJobAttemptsNotExceeded(model.getAttempts());
-        // Check if the job is scheduled to run every day and the last run was yesterday or earlier.
-        boolean isLastRanDayPast = isJobScheduleIsEverydayAndPastLastRanAtOrNull(model::getScheduleType, model::getLastRanAt);
-        // Check if the job status is not success.
-        boolean isJobStatusNotSuccess = !JobStatus.SUCCESS.equals(model.getStatus());
 
-        // Reset attempts if they are exceeded but the last ran day is past.
-        if (!attemptsNotExceeded && isLastRanDayPast) {
-            model.setAttempts(0);
+
+    /**
+     * Publishes the given jobs that are due.
+     * Jobs owned by another instance, running or waiting for an instance are skipped, and the ones that are
+     * not due are rescheduled so they drop out of the due set.
+     *
+     * @param models The candidate jobs, usually the ones whose next fire time has passed.
+     * @param nextFireTimes The next fire time stored for each candidate, by job ID.
+     * @return The ID and type of every job that was added to the queue.
+     */
+    List<ImmutablePair<Long, JobType>> publishJobs(Collection<JobModel> models, Map<Long, Instant> nextFireTimes) {
+        Instant now = Instant.now(clock);
+        List<JobModel> dueJobs = new ArrayList<>();
+        List<JobModel> notDueJobs = new ArrayList<>();
+        Set<Long> attemptResetJobIds = new HashSet<>();
+        for (JobModel model : models) {
+            // Jobs assigned to another live instance, or already running, are left alone.
+            if (!instanceRing.isOwned(model.getId()) || Arrays.asList(JobStatus.RUNNING, JobStatus.NO_INSTANCE).contains(model.getStatus())) {
+                continue;
+            }
+
+            if (!isJobDue(nextFireTimes.get(model.getId()), now)) {
+                notDueJobs.add(model);
+                continue;
+            }
+
+            // A new occurrence of a recurring job starts with a fresh set of attempts.
+            if (0 < model.getAttempts() && isNewOccurrence(model, now)) {
+                model.setAttempts(0);
+                attemptResetJobIds.add(model.getId());
+            }
+            dueJobs.add(model);
         }
 
-        // Check if all conditions are met for the job to run.
-        if (attemptsNotExceeded && retryDelayExceeded && !isLastRanDayPast && isJobStatusNotSuccess) {
-            return true;
+        if (!notDueJobs.isEmpty()) {
+            reschedule(notDueJobs);
         }
+        return dueJobs.isEmpty() ? List.of() : enqueueJobs(dueJobs, attemptResetJobIds);
+    }
 
-        // If the job is scheduled to run once and has not succeeded yet, check if it's time to run.
-        if (ScheduleType.ONCE.equals(model.getScheduleType()) && isJobStatusNotSuccess) {
-            return isExecuteAtBeforeOrEqualToNow(model::getExecuteAt);
+
+
+    /**
+     * Enqueues a batch of jobs to be processed by sending them to their message queues.
+     * All jobs are claimed with a single conditional update that only succeeds for jobs no other instance
+     * is running, then the claimed ones are published back to back with publisher confirms and the confirms
+     * are awaited together. Jobs whose message the broker nacks (or does not confirm in time) get their
+     * previous status restored so they are picked up again.
+     *
+     * @param models The jobs that are due.
+     * @param attemptResetJobIds The IDs of the jobs whose attempts are reset as part of the claim.
+     * @return The ID and type of every job the broker confirmed.
+     */
+    List<ImmutablePair<Long, JobType>> enqueueJobs(List<JobModel> models, Set<Long> attemptResetJobIds) {
+        // Jobs without a routing key are never published, keep them out of the due set.
+        Map<Long, JobModel> routableJobs = new LinkedHashMap<>();
+        for (JobModel model : models) {
+            if (null == resolveRoutingKey(model.getJobType())) {
+                unschedule(model);
+            } else {
+                routableJobs.put(model.getId(), model);
+            }
+        }
+
+        if (routableJobs.isEmpty()) {
+            return List.of();
+        }
+
+        // Claim the jobs, the claim is identified by a token of its own, as the same instance may claim twice within a second
+        Instant now = Instant.now(clock);
+        Instant claimedAt = now.truncatedTo(ChronoUnit.SECONDS);
+        String claimedBy = Optional.ofNullable(nodeIdentity.getMacAddress()).orElse(UNKNOWN_INSTANCE);
+        String claimToken = UUID.randomUUID().toString();
+        // The claim checks again that the jobs are due, under the locks it claims them with
+        List<Long> claimedJobIds = jobStore.claimJobs(routableJobs.keySet(), attemptResetJobIds, now, claimedAt, claimedBy, claimToken);
+
+        // Update the claimed job models and remember the previous values in case the broker rejects them
+        Map<Long, JobSnapshot> snapshots = new HashMap<>();
+        List<JobModel> jobs = new ArrayList<>(claimedJobIds.size());
+        for (Long jobId : claimedJobIds) {
+            JobModel job = routableJobs.get(jobId);
+            snapshots.put(jobId, new JobSnapshot(job.getStatus(), job.getLastRanAt(), job.getLastRanBy()));
+            job.setStatus(JobStatus.RUNNING);
+            job.setLastRanAt(claimedAt);
+            job.setLastRanBy(claimedBy);
+            jobs.add(job);
+        }
+
+        // Send every job ID to the RabbitMQ exchange before waiting for any confirmation
+        List<ImmutablePair<JobModel, CorrelationData>> confirmations = new ArrayList<>(jobs.size());
+        List<JobModel> rejectedJobs = new ArrayList<>();
+        for (JobModel job : jobs) {
+            CorrelationData correlationData = new CorrelationData(String.valueOf(job.getId()));
+            try {
+                rabbitTemplate.convertAndSend(amqpConfigProperties.getExchange(), resolveRoutingKey(job.getJobType()), job.getId(), message -> {
+                    message.getMessageProperties().setHeader(ATTEMPT_HEADER, job.getAttempts());
+                    message.getMessageProperties().setHeader(CLAIM_HEADER, claimToken);
+                    return message;
+                }, correlationData);
+                confirmations.add(ImmutablePair.of(job, correlationData));
+            } catch (AmqpException exception) {
+                rejectedJobs.add(job);
+            }
         }
 
-        // If the job is scheduled to run every day, check if it's ready to run today.
-        if (ScheduleType.EVERYDAY.equals(model.getScheduleType())) {
-            return isEverydayJobReadyToRun(model::getExecuteAt, model::getLastRanAt);
+        // Collect the confirmations within a single deadline
+        long deadline = System.currentTimeMillis() + amqpConfigProperties.getConfirmTimeout();
+        List<ImmutablePair<Long, JobType>> publishedJobs = new ArrayList<>(confirmations.size());
+        for (ImmutablePair<JobModel, CorrelationData> confirmation : confirmations) {
+            JobModel job = confirmation.getLeft();
+            if (isConfirmed(confirmation.getRight(), deadline)) {
+                publishedJobs.add(ImmutablePair.of(job.getId(), job.getJobType()));
+            } else {
+                rejectedJobs.add(job);
+            }
         }
 
-        // If none of the above conditions are met, the job is not ready to run.
-        return false;
+        // Release the claim of the jobs that never reached the queue
+        for (JobModel job : rejectedJobs) {
+            JobSnapshot snapshot = snapshots.get(job.getId());
+            jobStore.releaseJob(job.getId(), snapshot.status(), snapshot.lastRanAt(), snapshot.lastRanBy(), claimToken);
+        }
+        return publishedJobs;
     }
 
 
+
     /**
-     * Checks if the specified execution time is before or equal to the current time.
+     * Claims a FAILED job for the delayed retry of its current attempt, the way {@link #enqueueJobs} claims due jobs.
      *
-     * @param specifiedExecuteAt A supplier that provides the execution time as an Instant.
-     * @return true if the execution time is before or equal to the current time, false otherwise.
-     */
-    private boolean isExecuteAtBeforeOrEqualToNow(Supplier<Instant> specifiedExecuteAt) {
-        // Convert the specified execution time from Instant to LocalDateTime in UTC.
-        LocalDateTime executeAt = specifiedExecuteAt.get().atZone(ZoneId.of("UTC")).toLocalDateTime();
-        // Get the current time as LocalDateTime in UTC.
-        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
-        // Check if the execution time is before or equal to the current time.
-        return executeAt.isBefore(now) || executeAt.isEqual(now);
+     * @param job The job, as loaded for the retry.
+     * @return true if the job was claimed and is now RUNNING, false if it was claimed or changed since the retry was published.
+     */
+    public boolean claimRetry(JobModel job) {
+        Instant claimedAt = Instant.now(clock).truncatedTo(ChronoUnit.SECONDS);
+        String claimedBy = Optional.ofNullable(nodeIdentity.getMacAddress()).orElse(UNKNOWN_INSTANCE);
+        if (!jobStore.claimRetry(job.getId(), job.getAttempts(), claimedAt, claimedBy)) {
+            return false;
+        }
+        job.setStatus(JobStatus.RUNNING);
+        job.setLastRanAt(claimedAt);
+        job.setLastRanBy(claimedBy);
+        return true;
     }
 
 
 
     /**
-     * Checks if an everyday job is ready to run based on its specified execution time and the last time it ran.
+     * Waits for the broker to confirm a published message.
      *
-     * @param specifiedExecuteAt A supplier that provides the execution time as an Instant.
-     * @param lastRanAt A supplier that provides the last execution time as an Instant.
-     * @return true if the job is ready to run, false otherwise.
-     */
-    private boolean isEverydayJobReadyToRun(Supplier<Instant> specifiedExecuteAt, Supplier<Instant> lastRanAt) {
-        // Convert the specified execution time from Instant to ZonedDateTime in UTC.
-        ZonedDateTime executeAt = specifiedExecuteAt.get().atZone(ZoneId.of("UTC"));
-        // Create a LocalDateTime for today's execution time at the specified hour and minute in UTC.
-        LocalDateTime todayExecuteAt = LocalDateTime.now(ZoneOffset.UTC)
-                .withHour(executeAt.getHour())
-                .withMinute(executeAt.getMinute());
-
-        // Convert the last execution time from Instant to LocalDateTime in UTC.
-        LocalDateTime lastRanAtValue = lastRanAt.get().atZone(ZoneId.of("UTC")).toLocalDateTime();
-        // Get the current time as LocalDateTime in UTC.
-        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
-
-        // Check if today's execution time is after the last execution time and before or equal to the current time.
-        return todayExecuteAt.isAfter(lastRanAtValue) && (todayExecuteAt.isBefore(now) || todayExecuteAt.isEqual(now));
+     * @param correlationData The correlation data the message was published with.
+     * @param deadline The epoch millisecond after which the message is considered unconfirmed.
+     * @return true if the broker acknowledged the message in time, false otherwise.
+     */
+    private boolean isConfirmed(CorrelationData correlationData, long deadline) {
+        try {
+            long timeout = Math.max(deadline - System.currentTimeMillis(), 0L);
+            return correlationData.getFuture().get(timeout, TimeUnit.MILLISECONDS).isAck();
+        } catch (ExecutionException | TimeoutException exception) {
+            return false;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
 
 
-
     /**
-     * Enqueues a job to be processed by sending it to a message queue.
+     * Determines the routing key for the given job type.
      *
-     * @param model The JobModel object that contains the details of the job to be enqueued.
-     * @return An ImmutablePair containing the job ID and its type, or null if the routing key is null.
+     * @param jobType The type of the job.
+     * @return The routing key of the queue that handles the job type, or null if it is never queued.
      */
-    ImmutablePair<Long, JobType> enqueueJob(JobModel model) {
-        // Determine the routing key based on the job type
-        String routingKey = switch (model.getJobType()) {
+    String resolveRoutingKey(JobType jobType) {
+        return switch (jobType) {
+            // Failed mails are retried per recipient by the MailOutbox, such jobs are only left from before it
+            // and their mails are moved into it by the JobArchiver.
             case FAILED_TEMPLATES -> null;
             case EMAIL -> amqpConfigProperties.getRoutingKey().getMailer();
             case RELEASE_CERTIFICATES -> amqpConfigProperties.getRoutingKey().getCertificateReleaser();
@@ -158,78 +286,143 @@ public class JobProcessor {
             case UPDATE_STUDENT_STATUS -> amqpConfigProperties.getRoutingKey().getUpdateStudentStatus();
             case NOTIFY_BOOKING_START -> amqpConfigProperties.getRoutingKey().getNotifyBookingStart();
         };
+    }
+
 
-        // Return null if the routing key is null
-        if (null == routingKey) {
-            return null;
+
+    /**
+     * Computes the instant at which a job is next due to run.
+     * A job that has never run fires at the first occurrence of its calendar. Afterwards a failed run is retried
+     * once the retry delay has passed, as long as attempts remain and the retry comes before the next occurrence;
+     * otherwise a recurring job waits for its next occurrence.
+     *
+     * @param model The job model containing the job's properties.
+     * @return The next fire time, or null if the job will never run again.
+     */
+    Instant computeNextFireAt(JobModel model) {
+        JobCalendar calendar = JobCalendar.of(model);
+        // Jobs that have never run fire at the first occurrence of their calendar.
+        if (null == model.getLastRanAt()) {
+            return calendar.firstOccurrence();
         }
 
-        // Update the job model's status and other details
-        model.setStatus(JobStatus.RUNNING);
-        model.setLastRanAt(Instant.now());
-        RegistryModel instance = getInstance();
-        model.setLastRanBy(instance.getMacAddress());
-        // Save the job model to the database and flush the changes
-        JobModel job = jpaProxy.saveJobAndFlush(model);
-
-        // Send the job ID to the RabbitMQ exchange with the specified routing key
-        rabbitTemplate.convertAndSend(amqpConfigProperties.getExchange(), routingKey, job.getId());
-        // Return the job ID and type as an ImmutablePair
-        return ImmutablePair.of(job.getId(), job.getJobType());
+        Instant lastRanAt = model.getLastRanAt();
+        boolean isJobStatusNotSuccess = !JobStatus.SUCCESS.equals(model.getStatus());
+        boolean attemptsNotExceeded = isJobAttemptsNotExceeded(model.getAttempts());
+        // A failed run may be retried once its backoff has passed. With delayed retries the broker brings the
+        // job back after the backoff, the scheduler only steps in once the fallback has passed as well.
+        Instant retryAt = isJobStatusNotSuccess && attemptsNotExceeded
+                ? lastRanAt.plusMillis(retryBackoff(model.getAttempts()) + (amqpConfigProperties.isDelayedRetry() ? amqpConfigProperties.getRetryFallback() : 0L))
+                : null;
+
+        if (!calendar.isRecurring()) {
+            // Finished or exhausted jobs are never picked up again.
+            if (!isJobStatusNotSuccess || (JobStatus.FAILED.equals(model.getStatus()) && !attemptsNotExceeded)) {
+                return null;
+            }
+            return JobStatus.FAILED.equals(model.getStatus()) ? retryAt : model.getExecuteAt();
+        }
+
+        // Retries only apply until the next occurrence, which then takes over.
+        Instant nextOccurrence = calendar.nextOccurrenceAfter(lastRanAt);
+        return earliest(retryAt, nextOccurrence);
+    }
+
+
+
+    private static Instant earliest(Instant first, Instant second) {
+        if (null == first) return second;
+        if (null == second) return first;
+        return first.isBefore(second) ? first : second;
     }
 
 
 
     /**
-     * Checks if the number of job attempts has not exceeded the maximum retry limit.
+     * Recomputes and persists the next fire time of the given jobs.
      *
-     * @param attempts The current number of attempts made for the job.
-     * @return true if the number of attempts is less than the configured retry limit; otherwise, false.
+     * @param models The jobs whose next fire time should be refreshed.
+     * @return The refreshed job states.
      */
-    boolean isJobAttemptsNotExceeded(int attempts) {
-        // Compare the current number of attempts with the maximum retry limit from configuration.
-        return attempts < amqpConfigProperties.getRetryLimit();
+    public List<JobStateModel> reschedule(Collection<JobModel> models) {
+        List<JobStateModel> states = models
+                .stream()
+                .map(model -> JobStateModel.builder()
+                        .jobId(model.getId())
+                        .nextFireAt(computeNextFireAt(model))
+                        .build())
+                .toList();
+        jobStore.saveJobStates(states);
+        return states;
+    }
+
+
+
+    /**
+     * Marks the given job as never to be picked up again by the scheduler.
+     *
+     * @param model The job that should be removed from the schedule.
+     */
+    void unschedule(JobModel model) {
+        jobStore.saveJobStates(List.of(JobStateModel.builder()
+                .jobId(model.getId())
+                .nextFireAt(null)
+                .build()));
     }
 
 
 
     /**
-     * Checks if a job scheduled to run every day should be executed based on its last run time.
-     * The job is eligible to run if:
-     * 1. The schedule type is set to "every day".
-     * 2. The last run time is either null or in the past compared to the current time.
+     * Marks a job as FAILED after a failed run and records the kind of failure on its state. A transient failure
+     * or a timeout counts as one attempt, while a permanent failure uses up all remaining attempts, so neither
+     * a delayed retry nor the scheduler runs the job again.
      *
-     * @param scheduleType A supplier providing the job's schedule type.
-     * @param lastRanAt A supplier providing the timestamp of the last time the job ran.
-     * @return true if the job is scheduled to run every day and the last run time is either null or in the past; otherwise, false.
+     * @param model The job whose run failed.
+     * @param failure The kind of failure the run ended with.
      */
-    boolean isJobScheduleIsEverydayAndPastLastRanAtOrNull(Supplier<ScheduleType> scheduleType, Supplier<Instant> lastRanAt) {
-        return isJobScheduleIsEveryday.test(scheduleType.get()) && (isLastRanAtNull.or(isLastRanAtPastNow).test(lastRanAt.get()));
+    public void fail(JobModel model, JobFailure failure) {
+        model.setStatus(JobStatus.FAILED);
+        model.setAttempts(JobFailure.PERMANENT == failure
+                ? Math.max(model.getAttempts() + 1, amqpConfigProperties.getRetryLimit())
+                : model.getAttempts() + 1);
+        jobStore.saveJobFailure(model.getId(), failure, Instant.now(clock));
     }
 
 
 
+    /**
+     * Takes a job that failed permanently out of the schedule, recurring occurrences included, and records
+     * the root cause of the failure on its state. Called once the failed run has been saved and rescheduled.
+     *
+     * @param jobId The ID of the job to quarantine.
+     * @param cause The exception the run failed with.
+     */
+    public void quarantine(Long jobId, Throwable cause) {
+        jobStore.quarantineJob(jobId, Instant.now(clock), StringUtils.abbreviate(ExceptionUtils.getRootCauseMessage(cause), QUARANTINE_CAUSE_LENGTH));
+    }
+
+
+
+    /**
+     * Checks if the number of job attempts has not exceeded the maximum retry limit.
+     *
+     * @param attempts The current number of attempts made for the job.
+     * @return true if the number of attempts is less than the configured retry limit; otherwise, false.
+     */
+    boolean isJobAttemptsNotExceeded(int attempts) {
+        // Compare the current number of attempts with the maximum retry limit from configuration.
+        return attempts < amqpConfigProperties.getRetryLimit();
+    }
+
+
 
     /**
-     * Retrieves the instance from the registry based on the current device's MAC address.
-     * This method is transactional with serializable isolation level and required propagation.
-     * It retrieves the instance from the registry repository based on the current device's MAC address.
-     * If no instance is found for the current device's MAC address, a new instance is created
-     * using the current device's IP and MAC addresses.
-     * @return The instance from the registry based on the current device's MAC address.
+     * Computes the exponential backoff before a failed job is retried, the retry delay doubling with every attempt.
+     *
+     * @param attempts The number of failed attempts so far.
+     * @return The backoff in milliseconds.
      */
-    public RegistryModel getInstance() {
-        // Retrieve the current device's IP and MAC addresses.
-        String currentInstanceIpAddress = deviceIdentity.getDeviceAddress(DeviceAddressType.IP);
-        String currentInstanceMacAddress = deviceIdentity.getDeviceAddress(DeviceAddressType.MAC);
-        // Check if an instance exists for the current device's MAC address.
-        // If found, return the first instance from the list of instances.
-        // Otherwise, create a new instance using the current device's IP and MAC addresses.
-        return Optional.of(currentInstanceMacAddress)
-                .map(jpaProxy::getRegistryByMacAddress)
-                .orElse(RegistryModel.builder()
-                        .ipAddress(currentInstanceIpAddress)
-                        .macAddress(currentInstanceMacAddress)
-                        .build());
+    long retryBackoff(int attempts) {
+        return amqpConfigProperties.getRetryDelay() << Math.min(Math.max(attempts - 1, 0), 20);
     }
 }
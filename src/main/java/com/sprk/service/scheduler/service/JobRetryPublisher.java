@@ -0,0 +1,127 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.commons.entity.mq.tag.JobStatus;
+import com.sprk.commons.entity.mq.tag.JobType;
+import com.sprk.service.scheduler.properties.amqp.AMQPConfigProperties;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+
+
+/**
+ * Sends failed jobs back to their queue through the broker instead of the scheduler loop.
+ * Every work queue has a delay queue per retry attempt on the retry exchange; a failed job is published to the
+ * delay queue of its attempt with the exponential backoff (minus up to the configured jitter) as its expiration,
+ * and once it expires the delay queue dead-letters it to the job exchange with the routing key of its work queue.
+ * Jobs past the retry limit are published to the parking queue of their work queue instead, where they stay
+ * for inspection. The scheduler still retries a job whose retry never arrives, but only after a fallback delay.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class JobRetryPublisher {
+
+    private final AMQPConfigProperties amqpConfigProperties;
+    private final JobProcessor jobProcessor;
+    private final RabbitTemplate rabbitTemplate;
+
+    /**
+     * The header marking a message as a delayed retry, which claims the FAILED job itself on delivery.
+     */
+    public static final String RETRY_HEADER = "x-job-retry";
+
+
+
+    public static String retryExchange(String exchange) {
+        return exchange + ".retry";
+    }
+
+    public static String retryQueue(String queue, int attempts) {
+        return queue + ".retry." + attempts;
+    }
+
+    public static String retryRoutingKey(String routingKey, int attempts) {
+        return routingKey + ".retry." + attempts;
+    }
+
+    public static String parkingQueue(String queue) {
+        return queue + ".parking";
+    }
+
+    public static String parkingRoutingKey(String routingKey) {
+        return routingKey + ".parking";
+    }
+
+
+
+    /**
+     * Publishes the retry of a FAILED job, or parks it when it is past the retry limit, once the current
+     * transaction has committed the failure. Without a transaction it is published straight away.
+     *
+     * @param job The job whose run has just finished.
+     */
+    public void publishAfterCommit(JobModel job) {
+        if (!amqpConfigProperties.isDelayedRetry() || !JobStatus.FAILED.equals(job.getStatus())) {
+            return;
+        }
+
+        Long jobId = job.getId();
+        JobType jobType = job.getJobType();
+        int attempts = job.getAttempts();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(jobId, jobType, attempts);
+                }
+            });
+        } else {
+            publish(jobId, jobType, attempts);
+        }
+    }
+
+
+
+    private void publish(Long jobId, JobType jobType, int attempts) {
+        String routingKey = jobProcessor.resolveRoutingKey(jobType);
+        if (null == routingKey) {
+            return;
+        }
+
+        boolean isRetry = jobProcessor.isJobAttemptsNotExceeded(attempts);
+        String exchange = retryExchange(amqpConfigProperties.getExchange());
+        try {
+            if (isRetry) {
+                long backoff = jobProcessor.retryBackoff(attempts);
+                // Jitter only shortens the delay, so a retry never waits behind the head of its delay queue for long.
+                long expiration = backoff - (long) (backoff * amqpConfigProperties.getRetryJitter() * ThreadLocalRandom.current().nextDouble());
+                rabbitTemplate.convertAndSend(exchange, retryRoutingKey(routingKey, attempts), jobId, message -> {
+                    message.getMessageProperties().setHeader(JobProcessor.ATTEMPT_HEADER, attempts);
+                    message.getMessageProperties().setHeader(RETRY_HEADER, true);
+                    message.getMessageProperties().setExpiration(String.valueOf(expiration));
+                    return message;
+                });
+                log.info("Retrying job ({}) in {} ms. [attempt {}]", jobId, expiration, attempts);
+            } else {
+                rabbitTemplate.convertAndSend(exchange, parkingRoutingKey(routingKey), jobId, message -> {
+                    message.getMessageProperties().setHeader(JobProcessor.ATTEMPT_HEADER, attempts);
+                    return message;
+                });
+                log.warn("Parked job ({}) after {} failed attempts. [{}]", jobId, attempts, jobType);
+            }
+        } catch (AmqpException exception) {
+            // The scheduler retries the job once the fallback delay has passed.
+            log.error("Failed to publish the {} of job ({}).", isRetry ? "retry" : "parking", jobId, exception);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.sprk.service.scheduler.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sprk.commons.dto.amqp.EmailTemplateDTO;
+import com.sprk.commons.entity.mq.JobModel;
+import com.sprk.service.scheduler.consumer.JobFailure;
+import com.sprk.service.scheduler.dao.JPAProxy;
+import com.sprk.service.scheduler.dto.payload.MailRequest;
+import com.sprk.service.scheduler.entity.mq.MailOutboxModel;
+import com.sprk.service.scheduler.properties.mailer.EMailerConfigProperties;
+import com.sprk.service.scheduler.tag.MailOutboxStatus;
+import com.sprk.service.scheduler.util.EMailTemplates;
+import com.sprk.service.scheduler.util.JsonConverter;
+import com.sprk.service.scheduler.util.MailerWizard;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+
+/**
+ * Keeps the mails that a job could not deliver, one row per recipient, and resends them until they are delivered
+ * or out of attempts. Mails that failed on the way (e.g. the connection broke or the provider was throttling)
+ * are retried with an exponential backoff, mails that can never be sent as they are (e.g. without a recipient)
+ * are kept as FAILED right away. The outbox is drained by the instance that owns it on the ring, so the
+ * quota it resends under holds across instances.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MailOutbox {
+
+    private final JPAProxy jpaProxy;
+    private final MailerWizard mailer;
+    private final EMailTemplates eMailTemplates;
+    private final JsonConverter jsonConverter;
+    private final InstanceRing instanceRing;
+    private final EMailerConfigProperties eMailerConfigProperties;
+    private final Clock clock;
+
+    /**
+     * The key the dispatcher is assigned by on the ring, it never collides with a job ID or the archiver.
+     */
+    private static final Long DISPATCHER_KEY = -2L;
+    private static final int ERROR_LENGTH = 1000;
+
+    /**
+     * A mail and its fields in the Lombok string form, which is how the mails of a FAILED_TEMPLATES job were written as map keys.
+     */
+    private static final String LEGACY_MAIL_PREFIX = "EmailTemplateDTO(";
+    private static final Pattern LEGACY_MAIL_FIELD = Pattern.compile("(?:^EmailTemplateDTO\\(|, )(recipient|subject|messageBody|isHtml|html|attachmentPath)=");
+
+    private final AtomicBoolean isDispatching = new AtomicBoolean(false);
+
+    // Only used while dispatching, which is never done by two threads at once.
+    private Instant quotaWindowStart = Instant.EPOCH;
+    private int quotaUsed;
+
+
+
+    /**
+     * Adds mails to the outbox as part of the current transaction, after the job has tried them once.
+     *
+     * @param jobId The job that tried to send the mails.
+     * @param mails The mails with the reason they were not sent, e.g. {@link MailRequest}s or {@link EmailTemplateDTO}s.
+     * @param recipient The recipient of a mail.
+     * @param status PENDING to retry the mails, FAILED if sending them again cannot succeed.
+     * @throws JsonProcessingException If a mail cannot be stored as JSON.
+     */
+    public <T> void addMails(Long jobId, Map<T, String> mails, Function<T, String> recipient, MailOutboxStatus status) throws JsonProcessingException {
+        Instant now = Instant.now(clock);
+        List<MailOutboxModel> models = new ArrayList<>(mails.size());
+        for (Map.Entry<T, String> entry : mails.entrySet()) {
+            T mail = entry.getKey();
+            models.add(MailOutboxModel.builder()
+                    .jobId(jobId)
+                    .recipient(recipient.apply(mail))
+                    .template(mail instanceof MailRequest request ? request.getTemplate() : null)
+                    .payload(jsonConverter.convertToJsonString(mail))
+                    .status(status)
+                    .attempts(1)
+                    .nextAttemptAt(MailOutboxStatus.PENDING == status ? now.plusMillis(retryDelay(1)) : null)
+                    .lastError(StringUtils.abbreviate(entry.getValue(), ERROR_LENGTH))
+                    .createdAt(now)
+                    .build());
+        }
+        jpaProxy.addToMailOutbox(models);
+    }
+
+
+
+    /**
+     * Turns a job that kept failed mails before the outbox into outbox rows, which are retried like any other
+     * failed mail. The data of such a job maps each mail to the reason it failed, with the mail written as its
+     * JSON or its string form. A mail that cannot be read back is kept as FAILED with its raw data, so it can
+     * still be looked into.
+     *
+     * @param job A job of the type FAILED_TEMPLATES.
+     * @return The mails of the job, not yet added to the outbox.
+     */
+    public List<MailOutboxModel> toMails(JobModel job) {
+        Instant now = Instant.now(clock);
+        List<MailOutboxModel> models = new ArrayList<>();
+        for (Map.Entry<String, String> entry : readLegacyMails(job.getJsonData()).entrySet()) {
+            MailOutboxModel.MailOutboxModelBuilder model = MailOutboxModel.builder()
+                    .jobId(job.getId())
+                    .attempts(1)
+                    .lastError(StringUtils.abbreviate(entry.getValue(), ERROR_LENGTH))
+                    .createdAt(now);
+            EmailTemplateDTO mail = readLegacyMail(entry.getKey());
+            String payload = null;
+            try {
+                payload = null == mail ? null : jsonConverter.convertToJsonString(mail);
+            } catch (JsonProcessingException exception) {
+                log.warn("Failed to write a mail of job ({}) as JSON.", job.getId(), exception);
+            }
+
+            if (null != payload) {
+                models.add(model
+                        .recipient(mail.getRecipient())
+                        .payload(payload)
+                        .status(MailOutboxStatus.PENDING)
+                        .nextAttemptAt(now)
+                        .build());
+            } else {
+                log.warn("Kept a mail of job ({}) as FAILED, it could not be read back.", job.getId());
+                models.add(model
+                        .payload(entry.getKey())
+                        .status(MailOutboxStatus.FAILED)
+                        .lastError("The mail could not be read back from the job that kept it.")
+                        .build());
+            }
+        }
+        return models;
+    }
+
+
+
+    @Scheduled(fixedDelayString = "${app.emailer.outboxInterval}", initialDelay = 30_000)
+    public void autoDispatchMails() {
+        if (instanceRing.isOwned(DISPATCHER_KEY) && isDispatching.compareAndSet(false, true)) {
+            try {
+                dispatchMails();
+                jpaProxy.purgeSentMails(Instant.now(clock).minusMillis(eMailerConfigProperties.getOutboxRetention()));
+            } catch (Exception exception) {
+                log.error("Failed to dispatch the mail outbox.", exception);
+            } finally {
+                isDispatching.set(false);
+            }
+        }
+    }
+
+
+
+    /**
+     * Sends the due mails one batch at a time, as long as the quota allows. A batch of which no mail could be sent
+     * ends the run, the provider is not asked again before the next run.
+     */
+    private void dispatchMails() {
+        int batchSize = eMailerConfigProperties.getBatchSize();
+        int limit;
+        while (0 < (limit = Math.min(batchSize, remainingQuota()))) {
+            Instant now = Instant.now(clock);
+            List<MailOutboxModel> dueMails = jpaProxy.getDueMails(now, limit);
+            if (dueMails.isEmpty()) {
+                return;
+            }
+
+            Instant leaseUntil = now.plusMillis(eMailerConfigProperties.getOutboxLease());
+            List<MailOutboxModel> claimedMails = dueMails.stream()
+                    .filter(mail -> jpaProxy.claimMail(mail.getId(), now, leaseUntil))
+                    .toList();
+            quotaUsed += claimedMails.size();
+            if (!claimedMails.isEmpty() && 0 == send(claimedMails)) {
+                return;
+            }
+        }
+    }
+
+
+
+    /**
+     * @return The number of mails that were sent.
+     */
+    private int send(List<MailOutboxModel> mails) {
+        List<MailOutboxModel> renderedMails = new ArrayList<>(mails.size());
+        List<EmailTemplateDTO> templates = new ArrayList<>(mails.size());
+        for (MailOutboxModel mail : mails) {
+            try {
+                templates.add(render(mail));
+                renderedMails.add(mail);
+            } catch (Exception exception) {
+                fail(mail, JobFailure.PERMANENT != JobFailure.classify(exception), String.valueOf(exception.getMessage()));
+            }
+        }
+        if (templates.isEmpty()) {
+            return 0;
+        }
+
+        int sent = 0;
+        List<MailerWizard.MailOutcome> outcomes = mailer.sendMails(templates);
+        for (int index = 0; index < outcomes.size(); index++) {
+            MailOutboxModel mail = renderedMails.get(index);
+            MailerWizard.MailOutcome outcome = outcomes.get(index);
+            switch (outcome.status()) {
+                case SENT -> {
+                    jpaProxy.markMailSent(mail.getId(), Instant.now(clock));
+                    sent++;
+                }
+                case SKIPPED -> fail(mail, false, "The mail has no recipient, subject or body.");
+                case FAILED -> fail(mail, true, outcome.cause());
+            }
+        }
+        return sent;
+    }
+
+
+
+    private EmailTemplateDTO render(MailOutboxModel mail) throws IOException {
+        return null == mail.getTemplate()
+                ? jsonConverter.convert(mail.getPayload(), EmailTemplateDTO.class)
+                : eMailTemplates.render(jsonConverter.convert(mail.getPayload(), MailRequest.class));
+    }
+
+
+
+    /**
+     * Records a failed attempt of a claimed mail, whose attempt has already been counted by the claim.
+     */
+    private void fail(MailOutboxModel mail, boolean isRetryable, String cause) {
+        int attempts = mail.getAttempts() + 1;
+        String error = StringUtils.abbreviate(cause, ERROR_LENGTH);
+        if (isRetryable && attempts < eMailerConfigProperties.getOutboxMaxAttempts()) {
+            jpaProxy.markMailFailed(mail.getId(), MailOutboxStatus.PENDING, Instant.now(clock).plusMillis(retryDelay(attempts)), error);
+        } else {
+            log.warn("Gave up on mail ({}) to ({}) after {} attempts. [{}]", mail.getId(), mail.getRecipient(), attempts, cause);
+            jpaProxy.markMailFailed(mail.getId(), MailOutboxStatus.FAILED, null, error);
+        }
+    }
+
+
+
+    /**
+     * @return The mails of a FAILED_TEMPLATES job as written, mapped to the reason they failed. Data that is not
+     * such a map is returned as a single mail, which cannot be read back.
+     */
+    private Map<String, String> readLegacyMails(String json) {
+        Map<String, String> mails = new LinkedHashMap<>();
+        if (StringUtils.isBlank(json)) {
+            return mails;
+        }
+
+        try {
+            JsonNode data = jsonConverter.convert(json, JsonNode.class);
+            if (data.isObject()) {
+                data.fields().forEachRemaining(field -> mails.put(field.getKey(), field.getValue().isNull() ? null : field.getValue().asText()));
+                return mails;
+            }
+        } catch (IOException exception) {
+            // Not JSON, kept as it is below.
+        }
+        mails.put(json, null);
+        return mails;
+    }
+
+
+
+    /**
+     * @return The mail written as its JSON or its Lombok string form, or null if it is neither or has no recipient.
+     */
+    private EmailTemplateDTO readLegacyMail(String value) {
+        try {
+            return jsonConverter.convert(value, EmailTemplateDTO.class);
+        } catch (IOException exception) {
+            // Not JSON, a mail written as a map key is in its string form.
+        }
+        if (!value.startsWith(LEGACY_MAIL_PREFIX) || !value.endsWith(")")) {
+            return null;
+        }
+
+        // The value of a field runs up to the next field, the fields of a mail are known so a comma in a body does not split it.
+        ObjectNode fields = JsonNodeFactory.instance.objectNode();
+        Matcher matcher = LEGACY_MAIL_FIELD.matcher(value);
+        String name = null;
+        int valueStart = 0;
+        while (matcher.find()) {
+            if (null != name) {
+                putLegacyField(fields, name, value.substring(valueStart, matcher.start()));
+            }
+            name = matcher.group(1);
+            valueStart = matcher.end();
+        }
+        if (null == name) {
+            return null;
+        }
+        putLegacyField(fields, name, value.substring(valueStart, value.length() - 1));
+
+        try {
+            EmailTemplateDTO mail = jsonConverter.convertNodes(List.of(fields), EmailTemplateDTO.class).get(0);
+            return StringUtils.isBlank(mail.getRecipient()) ? null : mail;
+        } catch (IOException | IllegalArgumentException exception) {
+            return null;
+        }
+    }
+
+
+
+    private static void putLegacyField(ObjectNode fields, String name, String value) {
+        String text = "null".equals(value) ? null : value;
+        if ("isHtml".equals(name) || "html".equals(name)) {
+            // The flag is named by its getter or by its field, depending on how the mail is read.
+            fields.put("html", text);
+            fields.put("isHtml", text);
+        } else {
+            fields.put(name, text);
+        }
+    }
+
+
+
+    /**
+     * @return The delay before the attempt that follows the given one, doubling with every attempt up to the maximum.
+     */
+    private long retryDelay(int attempts) {
+        long delay = eMailerConfigProperties.getOutboxRetryDelay() << Math.min(attempts - 1, 20);
+        return Math.min(delay, eMailerConfigProperties.getOutboxMaxRetryDelay());
+    }
+
+
+
+    /**
+     * @return The number of mails that may still be sent in the current quota window.
+     */
+    private int remainingQuota() {
+        int quotaLimit = eMailerConfigProperties.getQuotaLimit();
+        if (0 >= quotaLimit) {
+            return Integer.MAX_VALUE;
+        }
+
+        Instant now = Instant.now(clock);
+        if (!now.isBefore(quotaWindowStart.plusMillis(eMailerConfigProperties.getQuotaWindow()))) {
+            quotaWindowStart = now;
+            quotaUsed = 0;
+        }
+        return Math.max(0, quotaLimit - quotaUsed);
+    }
+}
@@ -0,0 +1,121 @@
+package com.sprk.service.scheduler.service;
+
+import com.sprk.commons.entity.mq.RegistryModel;
+import com.sprk.service.scheduler.dao.JPAProxy;
+import com.sprk.service.scheduler.tag.DeviceAddressType;
+import com.sprk.service.scheduler.util.DeviceIdentityWizard;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.Optional;
+
+
+
+/**
+ * The identity of this instance in the registry, resolved once at startup and held in memory.
+ * It is only resolved again when the network addresses of the device change, or replaced when the registry
+ * row has to be inserted again, so stamping jobs with the instance does not touch the database.
+ */
+@Component
+@RequiredArgsConstructor
+public class NodeIdentity {
+
+    private final JPAProxy jpaProxy;
+    private final DeviceIdentityWizard deviceIdentity;
+
+    private volatile RegistryModel instance;
+
+
+
+    @PostConstruct
+    public void init() {
+        instance = resolve(
+                deviceIdentity.getDeviceAddress(DeviceAddressType.IP),
+                deviceIdentity.getDeviceAddress(DeviceAddressType.MAC)
+        );
+    }
+
+
+
+    /**
+     * @return The registry entry of this instance. It may not be persisted yet.
+     */
+    public RegistryModel getInstance() {
+        return instance;
+    }
+
+
+
+    /**
+     * @return The MAC address identifying this instance, or null if the device has none.
+     */
+    public String getMacAddress() {
+        return instance.getMacAddress();
+    }
+
+
+
+    /**
+     * Reads the network interfaces again and resolves the identity if the addresses have changed.
+     *
+     * @return true if the identity changed, false otherwise.
+     */
+    public boolean refreshAddresses() {
+        deviceIdentity.evictDeviceAddresses();
+        String ipAddress = deviceIdentity.getDeviceAddress(DeviceAddressType.IP);
+        String macAddress = deviceIdentity.getDeviceAddress(DeviceAddressType.MAC);
+        RegistryModel current = instance;
+        if (Objects.equals(ipAddress, current.getIpAddress()) && Objects.equals(macAddress, current.getMacAddress())) {
+            return false;
+        }
+
+        instance = resolve(ipAddress, macAddress);
+        return true;
+    }
+
+
+
+    /**
+     * Replaces the identity with the registry row that was just stored.
+     *
+     * @param registered The persisted registry entry of this instance.
+     */
+    public void update(RegistryModel registered) {
+        instance = Objects.requireNonNull(registered);
+    }
+
+
+
+    /**
+     * @return An identity fixed to the given MAC address, for running the scheduler without a device or a registry,
+     * e.g. in the benchmarks.
+     */
+    static NodeIdentity fixed(String macAddress) {
+        NodeIdentity nodeIdentity = new NodeIdentity(null, null);
+        nodeIdentity.update(RegistryModel.builder().macAddress(macAddress).build());
+        return nodeIdentity;
+    }
+
+
+
+    /**
+     * Looks up the registry entry for the given MAC address, or creates a new (unsaved) one from the addresses.
+     * The IP address is always taken from the device, the lease renewal writes it to the registry.
+     */
+    private RegistryModel resolve(String ipAddress, String macAddress) {
+        return Optional.ofNullable(macAddress)
+                .map(jpaProxy::getRegistryByMacAddress)
+                .map(registered -> {
+                    registered.setIpAddress(ipAddress);
+                    return registered;
+                })
+                .orElse(RegistryModel.builder()
+                        .ipAddress(ipAddress)
+                        .macAddress(macAddress)
+                        .build());
+    }
+}
@@ -17,8 +17,10 @@ import com.sprk.commons.entity.primary.user.UserModel;
 import com.sprk.commons.exception.InvalidDataException;
 import com.sprk.commons.exception.ResourceNotFoundException;
 import com.sprk.service.scheduler.properties.amqp.AMQPConfigProperties;
+import com.sprk.service.scheduler.properties.scheduler.SchedulerConfigProperties;
 import com.sprk.service.scheduler.dao.JPAProxy;
 import com.sprk.service.scheduler.dto.payload.JobRequest;
+import com.sprk.service.scheduler.entity.mq.JobStateModel;
 import com.sprk.service.scheduler.repository.mq.JobRepository;
 import com.sprk.service.scheduler.repository.primary.*;
 import com.sprk.service.scheduler.tag.DeviceAddressType;
@@ -30,6 +32,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
@@ -52,6 +56,13 @@ public class SchedulerService {
     private final JPAProxy jpaProxy;
     private final JobProxy jobProxy;
     private final JobProcessor jobProcessor;
+    private final JobDispatcher jobDispatcher;
+    private final JobRetryPublisher jobRetryPublisher;
+    private final InstanceRing instanceRing;
+    private final NodeIdentity nodeIdentity;
+    private final SchedulerConfigProperties schedulerConfigProperties;
+    private final TaskExecutor taskExecutor;
+    private final Clock clock;
 
     private final FileDataRepository fileDataRepository;
     private final UserRepository userRepository;
@@ -63,7 +74,10 @@ public class SchedulerService {
     private final JobRepository jobRepository;
 
     private final AtomicBoolean isJobProcessing = new AtomicBoolean(false);
+    private final AtomicBoolean isReconcileRequested = new AtomicBoolean(false);
+    private final AtomicBoolean isIndexRequested = new AtomicBoolean(false);
     private final AtomicBoolean isInstanceSyncing = new AtomicBoolean(false);
+    private final AtomicBoolean isJobReaping = new AtomicBoolean(false);
 
 
     // TESTING
@@ -436,7 +450,6 @@ public class SchedulerService {
             propagation = Propagation.REQUIRED
     )
     public void init() {
-//        autoSyncInstanceInRegistry();
 //        rabbitTemplate.convertAndSend(
 //                amqpConfigProperties.getExchange(),
 //                amqpConfigProperties.getRoutingKey().getCertificateReleaser(),
@@ -590,34 +603,60 @@ public class SchedulerService {
     }
 
 
-//    /**
-//     * Automatically updates the registry at a fixed delay interval.
-//     * This method is scheduled to run every 30 seconds.
-//     */
-    /*
-    @Scheduled(fixedDelay = 10_000)
+    /**
+     * Automatically renews the lease of this instance in the registry at a fixed delay interval.
+     * When the set of live instances changes, the jobs are reconciled straight away so the ones that moved
+     * to this instance are picked up without waiting for the next interval.
+     */
+    @Scheduled(fixedDelayString = "${app.scheduler.heartbeatInterval}")
     public void autoSyncInstanceInRegistry() {
         if (isInstanceSyncing.compareAndSet(false, true)) {
             try {
-//                log.info("Resolving registry via schedule.");
-                syncInstanceInRegistry();
+                if (syncInstanceInRegistry()) {
+                    log.info("Scheduler instances changed, now sharing jobs across {}.", instanceRing.getMembers());
+                    autoPublishJobsInQueue();
+                }
             } finally {
                 isInstanceSyncing.set(false);
             }
         }
     }
-     */
 
     /**
-     * Automatically adds jobs to RabbitMQ for processing at a fixed delay interval.
-     * This method is scheduled to run every 60 seconds with an initial delay of 60 seconds.
+     * Automatically reconciles the dispatcher with the job table at a fixed delay interval.
+     * Jobs are published by the {@link JobDispatcher} at their fire time, this only refreshes what it holds.
      */
-    @Scheduled(fixedDelay = 90_000, initialDelay = 60_000)
+    @Scheduled(fixedDelayString = "${app.scheduler.reconcileInterval}", initialDelay = 10_000)
     public void autoPublishJobsInQueue() {
-        if (isJobProcessing.compareAndSet(false, true)) {
+        isReconcileRequested.set(true);
+        processJobs();
+    }
+
+    /**
+     * Indexes the jobs added since the last pass and hands those that are upcoming to the dispatcher,
+     * without walking the rest of the look-ahead window.
+     */
+    public void publishNewJobs() {
+        isIndexRequested.set(true);
+        processJobs();
+    }
+
+    /**
+     * Serves the requested reconciles and index passes one at a time. A request that arrives while another
+     * thread is processing is served by that thread with another pass, instead of being dropped.
+     */
+    private void processJobs() {
+        while ((isReconcileRequested.get() || isIndexRequested.get()) && isJobProcessing.compareAndSet(false, true)) {
             try {
-//                log.info("Resolving job-queue via schedule.");
-                publishJobsInQueue();
+                while (isReconcileRequested.get() || isIndexRequested.get()) {
+                    isIndexRequested.set(false);
+                    if (isReconcileRequested.getAndSet(false)) {
+//                        log.info("Resolving job-queue via schedule.");
+                        publishJobsInQueue();
+                    } else {
+                        scheduleUpcomingJobs(indexUnscheduledJobs());
+                    }
+                }
             } finally {
                 isJobProcessing.set(false);
             }
@@ -625,6 +664,21 @@ public class SchedulerService {
     }
 
 
+    /**
+     * Automatically returns stuck jobs to the scheduler at a fixed delay interval.
+     */
+    @Scheduled(fixedDelayString = "${app.scheduler.reapInterval}", initialDelay = 30_000)
+    public void autoReapStuckJobs() {
+        if (isJobReaping.compareAndSet(false, true)) {
+            try {
+                reapStuckJobs();
+            } finally {
+                isJobReaping.set(false);
+            }
+        }
+    }
+
+
 
     /**
      * Adds a job to the database based on the provided request parameters.
@@ -636,17 +690,37 @@ public class SchedulerService {
      */
     public APIResponse<String> addJobInDB(@Nonnull JobRequest request) {
         StringBuilder errorBuilder = new StringBuilder("Cannot proceed without specifying ");
+        String name = Optional.ofNullable(request.getName()).orElseThrow(() -> new InvalidDataException(errorBuilder.append("job-name.").toString()));
+        JobType jobType = Optional.ofNullable(request.getJob_type()).orElseThrow(() -> new InvalidDataException(errorBuilder.append("job-type.").toString()));
+        ScheduleType scheduleType = Optional.ofNullable(request.getSchedule_type()).orElseThrow(() -> new InvalidDataException(errorBuilder.append("schedule-type.").toString()));
+        Instant time = Optional.ofNullable(request.getTime()).orElseThrow(() -> new InvalidDataException(errorBuilder.append("time.").toString()));
+
+        // Reject calendars that can never fire before they reach the table.
+        try {
+            JobCalendar.of(scheduleType, time, request.getDays(), request.getDates());
+        } catch (IllegalArgumentException exception) {
+            throw new InvalidDataException(exception.getMessage());
+        }
+
         jobProxy.addJobInDB(
-                Optional.ofNullable(request.getName()).orElseThrow(() -> new InvalidDataException(errorBuilder.append("job-name.").toString())),
+                name,
                 request.getDescription(),
                 request.getJson(),
-                Optional.ofNullable(request.getJob_type()).orElseThrow(() -> new InvalidDataException(errorBuilder.append("job-type.").toString())),
-                Optional.ofNullable(request.getSchedule_type()).orElseThrow(() -> new InvalidDataException(errorBuilder.append("schedule-type.").toString())),
-                Optional.ofNullable(request.getTime()).orElseThrow(() -> new InvalidDataException(errorBuilder.append("time.").toString())),
-                null,
-                null
+                jobType,
+                scheduleType,
+                time,
+                request.getDays(),
+                request.getDates()
         );
 
+        // Index the new job straight away so a job due now does not wait for the next interval, off the request
+        // as the pass may turn into a full reconcile. A pass that fails or is rejected is left to the next reconcile.
+        try {
+            taskExecutor.execute(this::indexNewJobs);
+        } catch (TaskRejectedException exception) {
+            log.warn("Left the new job to the next reconcile. [{}]", exception.getMessage());
+        }
+
         return APIResponse
                 .<String>builder()
                 .message("Added Job in the DB. [" + request.getJob_type() + "]")
@@ -655,34 +729,170 @@ public class SchedulerService {
 
 
 
+    private void indexNewJobs() {
+        try {
+            publishNewJobs();
+        } catch (Exception exception) {
+            log.error("Failed to index the new jobs.", exception);
+        }
+    }
+
+
+
+    /**
+     * Releases a job that was quarantined after a permanent failure, e.g. once the data it failed on has been fixed.
+     * The job gets a fresh set of attempts and is due straight away, after which it follows its calendar again.
+     *
+     * @param jobId The ID of the quarantined job.
+     * @return An APIResponse confirming the release.
+     * @throws ResourceNotFoundException If the job is not quarantined.
+     */
+    public APIResponse<String> releaseQuarantinedJob(@Nonnull Long jobId) {
+        JobStateModel state = jpaProxy.releaseQuarantinedJob(jobId, Instant.now(clock))
+                .orElseThrow(() -> new ResourceNotFoundException("Job (" + jobId + ") is not quarantined."));
+        log.info("Released job ({}) from quarantine.", jobId);
+
+        // Hand the job to the dispatcher straight away if this instance owns it.
+        scheduleUpcomingJobs(List.of(state));
+
+        return APIResponse
+                .<String>builder()
+                .message("Released job (" + jobId + ") from quarantine.")
+                .build();
+    }
+
+
+
     /**
-     * Updates the heartbeat in the registry.
-     * This method is annotated with @Transactional to ensure serializable isolation level and required propagation.
+     * Renews the lease of this instance in the registry and rebuilds the ring from the instances whose lease is valid.
+     * The lease is renewed with a single update, the registry row is only inserted the first time.
+     *
+     * @return true if the set of live instances changed, false otherwise.
      */
-    private void syncInstanceInRegistry() {
-        RegistryModel instance = jobProcessor.getInstance();
-        instance.setLastUpdateReceived(Instant.now());
-        jpaProxy.saveRegistry(instance);
+    private boolean syncInstanceInRegistry() {
+        Instant now = Instant.now(clock);
+        if (nodeIdentity.refreshAddresses()) {
+            log.info("Instance addresses changed, now registered as {} ({}).", nodeIdentity.getMacAddress(), nodeIdentity.getInstance().getIpAddress());
+        }
+
+        RegistryModel instance = nodeIdentity.getInstance();
+        if (null == instance.getMacAddress()) {
+            return false;
+        }
+
+        if (!jpaProxy.renewLease(instance.getMacAddress(), instance.getIpAddress(), now)) {
+            instance.setLastUpdateReceived(now);
+            nodeIdentity.update(jpaProxy.saveRegistry(instance));
+        }
+
+        Instant cutoff = now.minusMillis(schedulerConfigProperties.getLeaseDuration());
+        return instanceRing.update(jpaProxy.getLiveMacAddresses(cutoff), instance.getMacAddress());
     }
 
 
 
     /**
-     * Adds jobs to RabbitMQ for processing.
-     * This method retrieves jobs from the database and adds them to the RabbitMQ queue based on their status and schedule.
-     * It is transactional with serializable isolation level and required propagation.
+     * Hands the jobs that are due within the look-ahead window and assigned to this instance to the dispatcher.
+     * This method indexes newly created jobs and then walks, page by page, only the jobs whose next fire time
+     * falls before the end of the window. Jobs that are already due are fired by the dispatcher right away.
      */
     private void publishJobsInQueue() {
-        jpaProxy.getAllJobs()
+        indexUnscheduledJobs();
+
+        Instant until = Instant.now(clock).plusMillis(schedulerConfigProperties.getLookAhead());
+        int batchSize = schedulerConfigProperties.getBatchSize();
+        long afterId = 0L;
+        List<JobStateModel> upcomingJobs;
+        do {
+            upcomingJobs = jpaProxy.getUpcomingJobStates(until, afterId, batchSize);
+            if (!upcomingJobs.isEmpty()) {
+                // Only keep the jobs assigned to this instance, the other live instances publish the rest.
+                jobDispatcher.schedule(upcomingJobs
+                        .stream()
+                        .filter(state -> instanceRing.isOwned(state.getJobId()))
+                        .toList());
+                afterId = upcomingJobs.get(upcomingJobs.size() - 1).getJobId();
+            }
+        } while (upcomingJobs.size() == batchSize);
+    }
+
+
+
+    /**
+     * Finds the jobs assigned to this instance that are RUNNING although their run has sent no heartbeat within
+     * the heartbeat timeout, i.e. the worker executing them died. A job whose message is still waiting in its queue
+     * has not started beating yet and is left alone; only a claim that no consumer has picked up within the
+     * delivery timeout is taken for a lost message.
+     * They are marked as FAILED, with a lost run (but not a lost message) counted as an attempt, and scheduled
+     * again and handed to the retry publisher, so they are retried (or wait for their next occurrence) like any
+     * other failed run.
+     */
+    private void reapStuckJobs() {
+        Instant now = Instant.now(clock);
+        Instant heartbeatCutoff = now.minusMillis(schedulerConfigProperties.getJobHeartbeatTimeout());
+        Instant deliveryCutoff = now.minusMillis(schedulerConfigProperties.getJobDeliveryTimeout());
+        int batchSize = schedulerConfigProperties.getBatchSize();
+        long afterId = 0L;
+        List<JobModel> stuckJobs;
+        do {
+            stuckJobs = jpaProxy.getStuckJobs(heartbeatCutoff, deliveryCutoff, afterId, batchSize);
+            if (!stuckJobs.isEmpty()) {
+                List<Long> ownedJobIds = stuckJobs
+                        .stream()
+                        .map(JobModel::getId)
+                        .filter(instanceRing::isOwned)
+                        .toList();
+                if (!ownedJobIds.isEmpty()) {
+                    List<JobModel> reapedJobs = jpaProxy.reapJobs(ownedJobIds, heartbeatCutoff, deliveryCutoff);
+                    reapedJobs.forEach(job -> log.warn("Reaped stuck job ({}) last claimed by {} at {}. [{}]", job.getId(), job.getLastRanBy(), job.getLastRanAt(), job.getJobType()));
+                    jobDispatcher.schedule(jobProcessor.reschedule(reapedJobs));
+                    reapedJobs.forEach(jobRetryPublisher::publishAfterCommit);
+                }
+                afterId = stuckJobs.get(stuckJobs.size() - 1).getId();
+            }
+        } while (stuckJobs.size() == batchSize);
+    }
+
+
+
+    /**
+     * Computes the next fire time for jobs that were added to the database since the last run,
+     * including jobs inserted by other services. Only a bounded window of ids below the last indexed
+     * job is re-checked, so the cost depends on the number of new jobs rather than the size of the table.
+     *
+     * @return The states of the newly indexed jobs.
+     */
+    private List<JobStateModel> indexUnscheduledJobs() {
+        int batchSize = schedulerConfigProperties.getBatchSize();
+        long afterId = Math.max(0L, jpaProxy.getLastIndexedJobId() - schedulerConfigProperties.getDiscoveryWindow());
+        List<JobStateModel> indexedStates = new ArrayList<>();
+        List<JobModel> unindexedJobs;
+        do {
+            unindexedJobs = jpaProxy.getUnindexedJobs(afterId, batchSize);
+            if (!unindexedJobs.isEmpty()) {
+                indexedStates.addAll(jobProcessor.reschedule(unindexedJobs));
+                afterId = unindexedJobs.get(unindexedJobs.size() - 1).getId();
+            }
+        } while (unindexedJobs.size() == batchSize);
+        return indexedStates;
+    }
+
+
+
+    /**
+     * Hands the given job states to the dispatcher if they fire within the look-ahead window and are
+     * assigned to this instance, the others are picked up by a later reconcile.
+     */
+    private void scheduleUpcomingJobs(List<JobStateModel> states) {
+        Instant until = Instant.now(clock).plusMillis(schedulerConfigProperties.getLookAhead());
+        List<JobStateModel> upcomingStates = states
                 .stream()
-                .filter(model -> !Arrays.asList(JobStatus.RUNNING, JobStatus.NO_INSTANCE).contains(model.getStatus()))
-                .filter(model -> !JobStatus.FAILED.equals(model.getStatus())
-                        || jobProcessor.isJobAttemptsNotExceeded(model.getAttempts())
-                        || jobProcessor.isJobScheduleIsEverydayAndPastLastRanAtOrNull(model::getScheduleType, model::getLastRanAt))
-                .filter(jobProcessor::isJobReadyToRun)
-                .map(jobProcessor::enqueueJob)
-                .filter(Objects::nonNull)
-                .forEach(job -> log.info("Added Job ({}) in the queue. [{}]", job.getLeft(), job.getRight()));
+                .filter(state -> null != state.getNextFireAt() && !state.getNextFireAt().isAfter(until))
+                .filter(state -> instanceRing.isOwned(state.getJobId()))
+                .toList();
+        if (!upcomingStates.isEmpty()) {
+            jobDispatcher.schedule(upcomingStates);
+        }
     }
 
 
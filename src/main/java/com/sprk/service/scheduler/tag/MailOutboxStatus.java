@@ -0,0 +1,14 @@
+package com.sprk.service.scheduler.tag;
+
+
+
+/**
+ * The state of a mail in the mail outbox.
+ */
+public enum MailOutboxStatus {
+    /** Still to be sent, once its next attempt is due. */
+    PENDING,
+    SENT,
+    /** Given up on, either rejected as it is or out of attempts. */
+    FAILED
+}
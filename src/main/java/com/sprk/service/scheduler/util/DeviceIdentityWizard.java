@@ -1,6 +1,7 @@
 package com.sprk.service.scheduler.util;
 
 import com.sprk.service.scheduler.tag.DeviceAddressType;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
@@ -52,6 +53,11 @@ public class DeviceIdentityWizard {
         return null;
     }
 
+    @CacheEvict(value = "deviceAddress", allEntries = true)
+    public void evictDeviceAddresses() {
+        // Clears the cached addresses so the next lookup reads the network interfaces again.
+    }
+
     private static String getMacAddress(InetAddress ip) {
         try {
             NetworkInterface network = NetworkInterface.getByInetAddress(ip);
@@ -2,12 +2,14 @@ package com.sprk.service.scheduler.util;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sprk.commons.exception.InvalidDataException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -56,6 +58,23 @@ public class JsonConverter {
         return objectMapper.readValue(json, typeReference);
     }
 
+    /**
+     * Converts already parsed JSON nodes to objects of the specified target class.
+     *
+     * @param nodes       the JSON nodes to convert
+     * @param targetClass the target class to convert to
+     * @param <T>         the type of the target class
+     * @return the converted objects, in the order of the nodes
+     * @throws IOException if a node does not match the target class
+     */
+    public <T> List<T> convertNodes(List<JsonNode> nodes, Class<T> targetClass) throws IOException {
+        List<T> values = new ArrayList<>(nodes.size());
+        for (JsonNode node : nodes) {
+            values.add(objectMapper.treeToValue(node, targetClass));
+        }
+        return values;
+    }
+
     public <K, V> Map<K, V> convertToMap(String json, Class<K> keyClass, Class<V> valueClass) throws IOException {
         // Define the TypeReference for the target class
         TypeReference<Map<K, V>> typeReference = new TypeReference<>() {
@@ -81,6 +100,10 @@ public class JsonConverter {
         return objectMapper.writeValueAsString(list);
     }
 
+    public String convertToJsonString(Object value) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(value);
+    }
+
     public <K, V> String convertMapToJsonString(Map<K, V> map) throws JsonProcessingException {
         return objectMapper.writeValueAsString(map);
     }
@@ -0,0 +1,28 @@
+package com.sprk.service.scheduler.util;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+
+
+/**
+ * The HTML mails the scheduler sends. Each body is a resource under {@code mail-templates/} with
+ * {@code {{name}}} placeholders, compiled once by the {@link MailTemplateEngine}.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum MailTemplate {
+    CERTIFICATE_ON_HOLD("certificate-on-hold", "Urgent: Action Required Regarding Your Certificate"),
+    CERTIFICATE_VERIFICATION("certificate-verification", "Attention: Confirm Details for Certificate Issuance"),
+    CERTIFICATE_DOWNLOAD("certificate-download", "Your course certificate has been issued and is available for download"),
+    CERTIFICATE_EARLY_RELEASE("certificate-early-release", "Your course certificate has been issued ahead of schedule and is ready for download"),
+    BOOKING_EXPIRING("booking-expiring", "Course Booking Expiring Soon"),
+    BOOKING_EXPIRED("booking-expired", "Course Booking Expired");
+
+    private final String id;
+    private final String subject;
+
+    public String getResourcePath() {
+        return "mail-templates/" + id + ".html";
+    }
+}
@@ -0,0 +1,100 @@
+package com.sprk.service.scheduler.util;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+
+/**
+ * Renders the {@link MailTemplate}s. Every template is parsed once at startup into its static fragments and the
+ * placeholder slots between them, so rendering a mail only measures the parameters and fills a buffer of the
+ * exact size, instead of concatenating kilobytes of HTML per recipient.
+ */
+@Component
+public class MailTemplateEngine {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{(\\w+)}}");
+
+    private final Map<MailTemplate, CompiledTemplate> compiledTemplates = new EnumMap<>(MailTemplate.class);
+
+
+
+    /**
+     * @param fragments The static text around the slots, one more than there are slots.
+     * @param slots The parameter names of the placeholders, in order.
+     * @param staticLength The combined length of the fragments.
+     */
+    private record CompiledTemplate(String[] fragments, String[] slots, int staticLength) {}
+
+
+
+    @PostConstruct
+    public void compileTemplates() {
+        for (MailTemplate template : MailTemplate.values()) {
+            try {
+                compiledTemplates.put(template, compile(new ClassPathResource(template.getResourcePath()).getContentAsString(StandardCharsets.UTF_8)));
+            } catch (IOException exception) {
+                throw new UncheckedIOException("Failed to load mail template " + template.getResourcePath(), exception);
+            }
+        }
+    }
+
+
+
+    /**
+     * Renders the body of a template. Parameters are inserted as they are, a null parameter renders as "null".
+     *
+     * @param template The template to render.
+     * @param parameters The value of every placeholder of the template, by name.
+     * @return The rendered body.
+     * @throws IllegalArgumentException If a placeholder of the template has no parameter.
+     */
+    public String render(MailTemplate template, Map<String, ?> parameters) {
+        CompiledTemplate compiled = compiledTemplates.get(template);
+        String[] values = new String[compiled.slots().length];
+        int length = compiled.staticLength();
+        for (int slot = 0; slot < values.length; slot++) {
+            String name = compiled.slots()[slot];
+            if (!parameters.containsKey(name)) {
+                throw new IllegalArgumentException("Missing parameter `" + name + "` of mail template " + template.getId() + ".");
+            }
+            values[slot] = String.valueOf(parameters.get(name));
+            length += values[slot].length();
+        }
+
+        StringBuilder body = new StringBuilder(length);
+        for (int slot = 0; slot < values.length; slot++) {
+            body.append(compiled.fragments()[slot]).append(values[slot]);
+        }
+        return body.append(compiled.fragments()[values.length]).toString();
+    }
+
+
+
+    private static CompiledTemplate compile(String source) {
+        List<String> fragments = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(source);
+        int from = 0;
+        while (matcher.find()) {
+            fragments.add(source.substring(from, matcher.start()));
+            slots.add(matcher.group(1));
+            from = matcher.end();
+        }
+        fragments.add(source.substring(from));
+        int staticLength = fragments.stream().mapToInt(String::length).sum();
+        return new CompiledTemplate(fragments.toArray(String[]::new), slots.toArray(String[]::new), staticLength);
+    }
+}
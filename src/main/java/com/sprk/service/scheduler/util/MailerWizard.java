@@ -1,5 +1,6 @@
 package com.sprk.service.scheduler.util;
 
+import com.sprk.commons.dto.amqp.EmailTemplateDTO;
 import com.sprk.commons.exception.EmailDispatcherException;
 import com.sprk.service.scheduler.properties.mailer.EMailerConfigProperties;
 
@@ -9,6 +10,11 @@ import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 
 
@@ -18,14 +24,17 @@ public class MailerWizard {
     private final JavaMailSender javaMailSender;
     private final TextWizard textHelper;
     private final EMailerConfigProperties eMailerConfigProperties;
+    private final SmtpTransportPool smtpTransportPool;
     public MailerWizard(
             JavaMailSender javaMailSender,
             TextWizard textHelper,
-            EMailerConfigProperties eMailerConfigProperties
+            EMailerConfigProperties eMailerConfigProperties,
+            SmtpTransportPool smtpTransportPool
     ) {
         this.javaMailSender = javaMailSender;
         this.textHelper = textHelper;
         this.eMailerConfigProperties = eMailerConfigProperties;
+        this.smtpTransportPool = smtpTransportPool;
     }
 
 
@@ -54,6 +63,66 @@ public class MailerWizard {
         return mailSender(recipient, subject, messageBody, isHtml, attachmentPath);
     }
 
+    /**
+     * Sends a batch of mails back to back over one pooled connection instead of one connection per mail.
+     * Templates without a recipient, subject or body are skipped, as {@link #sendMail} returns false for them.
+     *
+     * @param templates The mails to send.
+     * @return The outcome of every template, in the order of the templates.
+     */
+    public List<MailOutcome> sendMails(List<EmailTemplateDTO> templates) {
+        validateConfiguration();
+
+        List<MailOutcome> outcomes = new ArrayList<>(Collections.nCopies(templates.size(), null));
+        List<MimeMessage> mimeMessages = new ArrayList<>();
+        List<Integer> messageIndexes = new ArrayList<>();
+        for (int index = 0; index < templates.size(); index++) {
+            EmailTemplateDTO template = templates.get(index);
+            if (isIncomplete(template.getRecipient(), template.getSubject(), template.getMessageBody())) {
+                outcomes.set(index, new MailOutcome(template, MailStatus.SKIPPED, null));
+                continue;
+            }
+            try {
+                mimeMessages.add(createMimeMessage(template.getRecipient(), template.getSubject(), template.getMessageBody(), template.isHtml(), template.getAttachmentPath()));
+                messageIndexes.add(index);
+            } catch (MessagingException exception) {
+                outcomes.set(index, new MailOutcome(template, MailStatus.FAILED, String.valueOf(exception.getMessage())));
+            }
+        }
+
+        Map<Integer, MessagingException> failures;
+        try {
+            failures = smtpTransportPool.send(mimeMessages);
+        } catch (MessagingException exception) {
+            failures = null;
+            for (int index : messageIndexes) {
+                outcomes.set(index, new MailOutcome(templates.get(index), MailStatus.FAILED, String.valueOf(exception.getMessage())));
+            }
+        }
+
+        if (null != failures) {
+            for (int message = 0; message < messageIndexes.size(); message++) {
+                int index = messageIndexes.get(message);
+                MessagingException failure = failures.get(message);
+                outcomes.set(index, null == failure
+                        ? new MailOutcome(templates.get(index), MailStatus.SENT, null)
+                        : new MailOutcome(templates.get(index), MailStatus.FAILED, String.valueOf(failure.getMessage())));
+            }
+        }
+        return outcomes;
+    }
+
+    public enum MailStatus {
+        SENT,
+        SKIPPED,
+        FAILED
+    }
+
+    /**
+     * @param cause The reason a FAILED mail could not be sent, null otherwise.
+     */
+    public record MailOutcome(EmailTemplateDTO template, MailStatus status, String cause) {}
+
     private boolean mailSender(
             String recipient,
             String subject,
@@ -61,31 +130,14 @@ public class MailerWizard {
             boolean isHtml,
             String attachmentPath
     ) {
-        if (null == eMailerConfigProperties)
-            throw new IllegalArgumentException("Failed to inject `${app.emailer.*}` values from the application properties.");
-
-        if (textHelper.isBlank(eMailerConfigProperties.getDefaultEmail()))
-            throw new IllegalArgumentException("Failed to inject `${app.emailer.defaultEmail}` value from the application properties.");
+        validateConfiguration();
 
-        if (textHelper.isBlank(recipient) || textHelper.isBlank(subject) || textHelper.isBlank(messageBody))
+        if (isIncomplete(recipient, subject, messageBody))
             return false;
 
         try {
-            MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-            MimeMessageHelper mimeMessageHelper = new MimeMessageHelper(mimeMessage, true);
-            mimeMessageHelper.setFrom(eMailerConfigProperties.getDefaultEmail());
-            mimeMessageHelper.setTo(recipient);
-            mimeMessageHelper.setSubject(subject);
-            mimeMessageHelper.setText(messageBody, isHtml);
-
-            if (!textHelper.isBlank(attachmentPath)) {
-                File file = new File(attachmentPath);
-                FileSystemResource fileSystemResource = new FileSystemResource(file);
-                String attachmentFilename = file.getName();
-                mimeMessageHelper.addAttachment(attachmentFilename, fileSystemResource);
-            }
-
-            javaMailSender.send(mimeMessage);
+            // Sent over a pooled connection instead of a new one per message
+            smtpTransportPool.send(createMimeMessage(recipient, subject, messageBody, isHtml, attachmentPath));
             return true;
         } catch (Exception exception) {
             throw new EmailDispatcherException(exception.getMessage());
@@ -93,4 +145,39 @@ public class MailerWizard {
 
     }
 
+    private void validateConfiguration() {
+        if (null == eMailerConfigProperties)
+            throw new IllegalArgumentException("Failed to inject `${app.emailer.*}` values from the application properties.");
+
+        if (textHelper.isBlank(eMailerConfigProperties.getDefaultEmail()))
+            throw new IllegalArgumentException("Failed to inject `${app.emailer.defaultEmail}` value from the application properties.");
+    }
+
+    private boolean isIncomplete(String recipient, String subject, String messageBody) {
+        return textHelper.isBlank(recipient) || textHelper.isBlank(subject) || textHelper.isBlank(messageBody);
+    }
+
+    private MimeMessage createMimeMessage(
+            String recipient,
+            String subject,
+            String messageBody,
+            boolean isHtml,
+            String attachmentPath
+    ) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        MimeMessageHelper mimeMessageHelper = new MimeMessageHelper(mimeMessage, true);
+        mimeMessageHelper.setFrom(eMailerConfigProperties.getDefaultEmail());
+        mimeMessageHelper.setTo(recipient);
+        mimeMessageHelper.setSubject(subject);
+        mimeMessageHelper.setText(messageBody, isHtml);
+
+        if (!textHelper.isBlank(attachmentPath)) {
+            File file = new File(attachmentPath);
+            FileSystemResource fileSystemResource = new FileSystemResource(file);
+            String attachmentFilename = file.getName();
+            mimeMessageHelper.addAttachment(attachmentFilename, fileSystemResource);
+        }
+        return mimeMessage;
+    }
+
 }
@@ -0,0 +1,228 @@
+package com.sprk.service.scheduler.util;
+
+import com.sprk.service.scheduler.properties.mailer.EMailerConfigProperties;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * A pool of connected and authenticated SMTP transports, shared by all the threads that send mails.
+ * Sending through {@link JavaMailSenderImpl#send} opens a new connection per message, paying the TCP, TLS and
+ * AUTH handshakes every time; a pooled transport pays them once and then sends many messages.
+ * A transport is checked (NOOP) before it is handed out, and closed once it has sent the configured number
+ * of messages, has been idle for too long or has failed.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SmtpTransportPool {
+
+    private final JavaMailSenderImpl javaMailSender;
+    private final EMailerConfigProperties eMailerConfigProperties;
+    private final Clock clock;
+
+    private final BlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<>();
+    private Semaphore permits;
+
+    private static final class PooledTransport {
+        private final Transport transport;
+        private int sent;
+        private Instant lastUsedAt;
+
+        private PooledTransport(Transport transport, Instant lastUsedAt) {
+            this.transport = transport;
+            this.lastUsedAt = lastUsedAt;
+        }
+    }
+
+
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(eMailerConfigProperties.getPoolSize(), true);
+    }
+
+
+
+    /**
+     * Sends a message through a pooled transport, waiting for one to become available if all are in use.
+     *
+     * @param mimeMessage The message to send.
+     * @throws MessagingException If no transport could be obtained or the message could not be sent.
+     */
+    public void send(MimeMessage mimeMessage) throws MessagingException {
+        MessagingException failure = send(List.of(mimeMessage)).get(0);
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+
+
+    /**
+     * Sends a batch of messages back to back over a single pooled transport. A message that fails does not stop
+     * the batch: if the connection broke, the remaining messages continue over another transport.
+     *
+     * @param mimeMessages The messages to send.
+     * @return The failure of each message that could not be sent, by its index in the batch.
+     * @throws MessagingException If all transports stayed in use for longer than the borrow timeout.
+     */
+    public Map<Integer, MessagingException> send(List<MimeMessage> mimeMessages) throws MessagingException {
+        try {
+            if (!permits.tryAcquire(eMailerConfigProperties.getPoolBorrowTimeout(), TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("No SMTP transport became available within " + eMailerConfigProperties.getPoolBorrowTimeout() + " ms.");
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP transport.", exception);
+        }
+
+        Map<Integer, MessagingException> failures = new HashMap<>();
+        PooledTransport pooled = null;
+        try {
+            for (int index = 0; index < mimeMessages.size(); index++) {
+                if (null == pooled) {
+                    try {
+                        pooled = borrow();
+                    } catch (MessagingException exception) {
+                        // Without a connection none of the remaining messages can be sent.
+                        for (int remaining = index; remaining < mimeMessages.size(); remaining++) {
+                            failures.put(remaining, exception);
+                        }
+                        break;
+                    }
+                }
+                MimeMessage mimeMessage = mimeMessages.get(index);
+                try {
+                    if (null == mimeMessage.getSentDate()) {
+                        mimeMessage.setSentDate(new Date());
+                    }
+                    mimeMessage.saveChanges();
+                    pooled.transport.sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+                    pooled.sent++;
+                    // A transport in use is not idle, so only the message count can expire it here.
+                    pooled.lastUsedAt = Instant.now(clock);
+                    if (isExpired(pooled)) {
+                        close(pooled);
+                        pooled = null;
+                    }
+                } catch (SendFailedException exception) {
+                    // The server rejected the recipients of this message, the connection itself is still fine.
+                    failures.put(index, exception);
+                } catch (MessagingException | RuntimeException exception) {
+                    failures.put(index, exception instanceof MessagingException messagingException
+                            ? messagingException
+                            : new MessagingException(exception.getMessage(), exception));
+                    if (null != pooled) {
+                        close(pooled);
+                        pooled = null;
+                    }
+                }
+            }
+        } finally {
+            if (null != pooled) {
+                release(pooled);
+            }
+            permits.release();
+        }
+        return failures;
+    }
+
+
+
+    @Scheduled(fixedDelayString = "${app.emailer.poolIdleTimeout}")
+    public void evictIdleTransports() {
+        List<PooledTransport> candidates = new ArrayList<>();
+        idleTransports.drainTo(candidates);
+        for (PooledTransport pooled : candidates) {
+            if (isExpired(pooled)) {
+                close(pooled);
+            } else {
+                idleTransports.offerLast(pooled);
+            }
+        }
+    }
+
+
+
+    @PreDestroy
+    public void closeAll() {
+        PooledTransport pooled;
+        while (null != (pooled = idleTransports.pollFirst())) {
+            close(pooled);
+        }
+    }
+
+
+
+    /**
+     * Takes the most recently used healthy transport, or connects a new one.
+     */
+    private PooledTransport borrow() throws MessagingException {
+        PooledTransport pooled;
+        while (null != (pooled = idleTransports.pollFirst())) {
+            // isConnected() sends a NOOP, so a connection the server dropped is not handed out.
+            if (!isExpired(pooled) && pooled.transport.isConnected()) {
+                return pooled;
+            }
+            close(pooled);
+        }
+
+        Transport transport = javaMailSender.getSession().getTransport(javaMailSender.getProtocol());
+        transport.connect(javaMailSender.getHost(), javaMailSender.getPort(), javaMailSender.getUsername(), javaMailSender.getPassword());
+        return new PooledTransport(transport, Instant.now(clock));
+    }
+
+
+
+    private void release(PooledTransport pooled) {
+        pooled.lastUsedAt = Instant.now(clock);
+        if (pooled.sent >= eMailerConfigProperties.getMaxMessagesPerConnection()) {
+            close(pooled);
+        } else {
+            idleTransports.offerFirst(pooled);
+        }
+    }
+
+
+
+    private boolean isExpired(PooledTransport pooled) {
+        return pooled.sent >= eMailerConfigProperties.getMaxMessagesPerConnection()
+                || pooled.lastUsedAt.plusMillis(eMailerConfigProperties.getPoolIdleTimeout()).isBefore(Instant.now(clock));
+    }
+
+
+
+    private static void close(PooledTransport pooled) {
+        try {
+            pooled.transport.close();
+        } catch (MessagingException exception) {
+            log.debug("Failed to close SMTP transport.", exception);
+        }
+    }
+}